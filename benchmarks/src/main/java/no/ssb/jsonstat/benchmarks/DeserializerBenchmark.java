@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DeserializerBenchmark.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of complete documents with {@link no.ssb.jsonstat.v2.deser.DatasetDeserializer}.
+ * <p>
+ * ssb-api.json is a bundle (a map of datasets), the other sources are single datasets. The synthetic cubes
+ * are generated once during the setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DeserializerBenchmark {
+
+    private static final TypeReference<Map<String, DatasetBuildable>> BUNDLE =
+            new TypeReference<Map<String, DatasetBuildable>>() {
+            };
+
+    @Param({"us-labor.json", "ssb-api.json", "1000000", "10000000"})
+    public String source;
+
+    private ObjectMapper mapper;
+    private byte[] bytes;
+    private boolean bundle;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper = Samples.mapper();
+        if (source.endsWith(".json")) {
+            bytes = Samples.resource("v2/" + source);
+            bundle = source.equals("ssb-api.json");
+        } else {
+            bytes = Samples.document(Integer.parseInt(source));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws IOException {
+        if (bundle) {
+            Map<String, DatasetBuildable> datasets = mapper.readValue(bytes, BUNDLE);
+            for (DatasetBuildable dataset : datasets.values()) {
+                blackhole.consume(dataset.build());
+            }
+        } else {
+            Dataset dataset = mapper.readValue(bytes, DatasetBuildable.class).build();
+            blackhole.consume(dataset);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     LookupBenchmark.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.benchmarks;
+
+import no.ssb.jsonstat.v2.Dataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random access to the values of a dataset by categories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LookupBenchmark {
+
+    // Number of precomputed keys, a power of two.
+    private static final int KEYS = 1 << 12;
+
+    @Param({"1000000", "10000000"})
+    public int cells;
+
+    private Map<List<String>, Number> map;
+    private Dataset dataset;
+    private List<String>[] keys;
+    private int next;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        dataset = Samples.cube(cells);
+        map = dataset.asMap();
+
+        Random random = new Random(42);
+        keys = new List[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = Arrays.asList(
+                    "a" + random.nextInt(cells / 1000),
+                    "b" + random.nextInt(10),
+                    "c" + random.nextInt(10),
+                    "d" + random.nextInt(10)
+            );
+        }
+    }
+
+    @Benchmark
+    public Number asMapGet() {
+        return map.get(keys[next++ & (KEYS - 1)]);
+    }
+
+    @Benchmark
+    public double indexOf() {
+        List<String> key = keys[next++ & (KEYS - 1)];
+        return dataset.getDouble(dataset.indexOf(key.get(0), key.get(1), key.get(2), key.get(3)));
+    }
+}
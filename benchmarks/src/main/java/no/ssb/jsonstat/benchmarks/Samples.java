@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     Samples.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.io.Resources;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.Dimension;
+import no.ssb.jsonstat.v2.support.CubeGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Data shared by the benchmarks.
+ */
+final class Samples {
+
+    private Samples() {
+    }
+
+    /**
+     * Create a mapper configured like the tests of the library.
+     */
+    static ObjectMapper mapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModule(new GuavaModule());
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new JsonStatModule());
+        // The samples contain note, link and child.
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        return mapper;
+    }
+
+    /**
+     * Read a sample file, relative to the no/ssb/jsonstat folder.
+     */
+    static byte[] resource(String name) throws IOException {
+        return Resources.toByteArray(Resources.getResource(Samples.class, "/no/ssb/jsonstat/" + name));
+    }
+
+    /**
+     * Build a dataset with the given number of cells, a multiple of 1000.
+     * <p>
+     * The cube has one dimension of cells / 1000 categories followed by three dimensions of 10 categories.
+     * One value in ten is missing.
+     */
+    static Dataset cube(int cells) {
+        checkArgument(cells > 0 && cells % 1000 == 0, "cells must be a multiple of 1000");
+
+        Dimension.Builder[] dimensions = new Dimension.Builder[4];
+        int[] sizes = {cells / 1000, 10, 10, 10};
+        for (int d = 0; d < sizes.length; d++) {
+            String id = String.valueOf((char) ('a' + d));
+            dimensions[d] = Dimension.create(id).withCategories(categories(id, sizes[d]));
+        }
+
+        return Dataset.create("synthetic")
+                .withDimensions(dimensions)
+                .withOrdinalMapper(ordinals -> ordinals[3] == 9
+                        ? Double.NaN
+                        : (ordinals[0] * 31 + ordinals[1] * 7 + ordinals[2] * 3 + ordinals[3]) % 1000)
+                .build();
+    }
+
+    /**
+     * Generate a JSON-stat 2.0 document with the given number of cells, see {@link #generator(int)}.
+     */
+    static byte[] document(int cells) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator(cells).write(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Create a generator for a document with the same shape as {@link #cube(int)}.
+     */
+    static CubeGenerator generator(int cells) {
+        checkArgument(cells > 0 && cells % 1000 == 0, "cells must be a multiple of 1000");
+        return CubeGenerator.create("synthetic")
+                .withDimension("a", cells / 1000)
+                .withDimension("b", 10)
+                .withDimension("c", 10)
+                .withDimension("d", 10)
+                .withMissingRatio(0.1);
+    }
+
+    /**
+     * Return the categories id0, id1... of a dimension.
+     */
+    static String[] categories(String id, int size) {
+        List<String> categories = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            categories.add(id + i);
+        }
+        return categories.toArray(new String[size]);
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     TableViewBenchmark.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.benchmarks;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Table;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.support.DatasetTableView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full scans of a {@link DatasetTableView}, through the {@link Table} interface and the row visitor.
+ * <p>
+ * The rows are the first and the third dimensions so that the columns are not contiguous.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TableViewBenchmark {
+
+    @Param({"1000000"})
+    public int cells;
+
+    private DatasetTableView table;
+
+    @Setup
+    public void setUp() {
+        Dataset dataset = Samples.cube(cells);
+        table = new DatasetTableView(dataset, ImmutableSet.of("a", "c"), ImmutableSet.of("b", "d"));
+    }
+
+    @Benchmark
+    public void cellSet(Blackhole blackhole) {
+        for (Table.Cell<List<String>, List<String>, Number> cell : table.cellSet()) {
+            blackhole.consume(cell.getValue());
+        }
+    }
+
+    @Benchmark
+    public void rowMap(Blackhole blackhole) {
+        for (Map<List<String>, Number> row : table.rowMap().values()) {
+            for (Number value : row.values()) {
+                blackhole.consume(value);
+            }
+        }
+    }
+
+    @Benchmark
+    public double forEachRow() {
+        double[] sum = new double[1];
+        table.forEachRow((ordinal, rowKey, values) -> {
+            for (double value : values) {
+                if (!Double.isNaN(value))
+                    sum[0] += value;
+            }
+        });
+        return sum[0];
+    }
+}
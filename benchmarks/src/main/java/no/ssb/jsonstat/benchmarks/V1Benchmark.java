@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     V1Benchmark.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.benchmarks;
+
+import no.ssb.jsonstat.v1.Dataset;
+import no.ssb.jsonstat.v1.Stat;
+import no.ssb.jsonstat.v1.parser.JacksonStatParser;
+import no.ssb.jsonstat.v1.table.CsvRenderer;
+import no.ssb.jsonstat.v1.table.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of v1 bundles with {@link JacksonStatParser} and rendering of their datasets with {@link CsvRenderer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class V1Benchmark {
+
+    // The v1 parser only accepts full timestamps in updated, oecd-canada.json can not be used. Numbers are
+    // the cells of a synthetic bundle of ten datasets.
+    @Param({"v2/ssb-api.json", "100000"})
+    public String source;
+
+    private byte[] bytes;
+    private Stat stat;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (source.endsWith(".json")) {
+            bytes = Samples.resource(source);
+        } else {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Samples.generator(Integer.parseInt(source)).writeBundle(out, 10);
+            bytes = out.toByteArray();
+        }
+        stat = new JacksonStatParser().parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public Stat parse() throws IOException {
+        return new JacksonStatParser().parse(new ByteArrayInputStream(bytes));
+    }
+
+    @Benchmark
+    public Dataset parseLazilyFirst() throws IOException {
+        return new JacksonStatParser().parseLazily(bytes).getDataset(0).get();
+    }
+
+    @Benchmark
+    public void renderCsv(Blackhole blackhole) {
+        for (Dataset dataset : stat.getDatasets()) {
+            blackhole.consume(Table.fromDataset(dataset).render(new CsvRenderer()));
+        }
+    }
+}
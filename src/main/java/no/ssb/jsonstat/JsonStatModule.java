@@ -29,6 +29,7 @@ public class JsonStatModule extends SimpleModule {
         super.setupModule(context);
 
         context.addDeserializers(new JsonStatDeserializer());
+        context.addSerializers(new JsonStatSerializer());
         // TODO: Ensure Optional can be handled.
         // TODO: Ensure Instant can be handled.
 
@@ -17,7 +17,26 @@
  */
 package no.ssb.jsonstat;
 
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
 import com.fasterxml.jackson.databind.ser.Serializers;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.ser.DatasetSerializer;
 
+/**
+ * Main serializer.
+ */
 public class JsonStatSerializer extends Serializers.Base {
+
+    private final DatasetSerializer datasetSerializer = new DatasetSerializer();
+
+    @Override
+    public JsonSerializer<?> findSerializer(SerializationConfig config, JavaType type, BeanDescription beanDesc) {
+        // Datasets are anonymous subclasses.
+        if (Dataset.class.isAssignableFrom(type.getRawClass()))
+            return datasetSerializer;
+        return null;
+    }
 }
@@ -24,6 +24,13 @@ public final class Category implements Iterable<String> {
         return integer;
     }
 
+    /**
+     * Return true if the category exists, in the index or in the labels when there is no index.
+     */
+    public boolean contains(String id) {
+        return indices.isEmpty() ? labels.containsKey(id) : indices.containsKey(id);
+    }
+
     public Optional<String> getLabel(String id) {
         return Optional.ofNullable(labels.get(id));
     }
@@ -41,54 +41,88 @@ public final class Dataset {
         return label;
     }
 
+    /**
+     * Group the values by the categories of a dimension.
+     * <p>
+     * The nth row contains the values of all the cells in the nth category of rowDimension, in the order of
+     * the other dimensions. The offset of each cell is computed from the strides of the dimensions. The rows
+     * are new lists, they can be modified by the caller.
+     */
     public List<List<Data>> getRows(Dimension rowDimension) {
-        IntCartesianProduct product = this.asCartasianProduct();
-        List<int[]> asList = product.asList();
-
         int groupingIndex = rowDimension.getIndex();
-        int lastIndex = 0;
+        int[] strides = strides();
+
+        // Offsets of the cells of a row relative to the first one, shared by all the rows.
+        int[] lengths = new int[size.length - 1];
+        int[] otherStrides = new int[size.length - 1];
+        for (int i = 0, j = 0; i < size.length; i++) {
+            if (i != groupingIndex) {
+                lengths[j] = size[i];
+                otherStrides[j] = strides[i];
+                j++;
+            }
+        }
+        IntCartesianProduct product = new IntCartesianProduct(lengths);
+        int[] offsets = new int[product.size()];
+        for (int j = 0; product.hasNext(); j++) {
+            int[] coord = product.nextInPlace();
+            for (int k = 0; k < coord.length; k++) {
+                offsets[j] += coord[k] * otherStrides[k];
+            }
+        }
 
-        List<List<Data>> rows = new ArrayList<>();
+        List<List<Data>> rows = new ArrayList<>(rowDimension.getSize());
         for (int i = 0; i < rowDimension.getSize(); i++) {
-            List<Data> row = new ArrayList<>();
-            for (int j = lastIndex; j < asList.size(); j++) {
-                int[] coord = asList.get(j);
-                int cv = coord[groupingIndex];
-                if (cv == i) {
-                    row.add(this.getValue(coord));
-                } else if (cv == i + 1) {
-                    lastIndex = j;
-                    break;
-                }
+            int base = i * strides[groupingIndex];
+            List<Data> row = new ArrayList<>(offsets.length);
+            for (int offset : offsets) {
+                row.add(values.get(base + offset));
             }
             rows.add(row);
         }
         return rows;
     }
 
+    /**
+     * Return the sub-cube where the given dimensions are fixed to a category.
+     * <p>
+     * The dimensions that are not in dimensionCategories are free, the slice contains their values in
+     * row-major order. Constant dimensions are always fixed. If no dimension is free the slice holds a
+     * single value.
+     * <p>
+     * The returned list is a new list, it can be modified by the caller. See {@link #getSliceView(Map)} to
+     * avoid the copy.
+     *
+     * @param dimensionCategories the category of each fixed dimension, by dimension id
+     * @throws IllegalArgumentException if a category does not exist in its dimension
+     */
     public List<Data> getSlice(Map<String, String> dimensionCategories) {
+        return new ArrayList<>(getSliceView(dimensionCategories));
+    }
+
+    /**
+     * Return a read-only {@link Slice} view of the sub-cube, see {@link #getSlice(Map)}. Nothing is copied.
+     *
+     * @param dimensionCategories the category of each fixed dimension, by dimension id
+     * @throws IllegalArgumentException if a category does not exist in its dimension
+     */
+    public Slice getSliceView(Map<String, String> dimensionCategories) {
         int[] dimensionIndices = getDimensionIndices(dimensionCategories);
-        Set<String> missing = validateRequiredDimensions(dimensionCategories.keySet());
-        List<Data> result = new ArrayList<>();
-        if (missing.isEmpty()) {
-            result.add(getValue(dimensionIndices));
-        }
-        else if (missing.size() == 1) {
-            int missingIndex = indexOf(dimensionIndices, -1);
-            String id = missing.iterator().next();
-            Dimension dim = dimensions.get(id);
-
-            for (int c = 0; c < dim.getSize(); c++) {
-                int[] clone = dimensionIndices.clone();
-                clone[missingIndex] = c;
-                result.add(getValue(clone));
+        int[] strides = strides();
+        List<Dimension> dimensions = getDimensions();
+
+        int base = 0;
+        List<Dimension> free = new ArrayList<>();
+        int[] freeStrides = new int[dimensionIndices.length];
+        for (int i = 0; i < dimensionIndices.length; i++) {
+            if (dimensionIndices[i] == -1) {
+                freeStrides[free.size()] = strides[i];
+                free.add(dimensions.get(i));
+            } else {
+                base += dimensionIndices[i] * strides[i];
             }
         }
-        else {
-            throw new IllegalArgumentException("More than one dimension was missing: " + missing);
-        }
-
-        return result;
+        return new Slice(values, base, free, Arrays.copyOf(freeStrides, free.size()));
     }
 
     public Data getValue(Map<String, String> dimensionCategories) {
@@ -146,16 +180,6 @@ public final class Dataset {
         return num;
     }
 
-    private int indexOf(int[] arr, int value) {
-        for (int i = 0; i < arr.length; i++) {
-            int v = arr[i];
-            if (v == value) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     private int[] getDimensionIndices(Map<String, String> dimensionCategories) {
         int[] indices = new int[dimensions.size()];
         int index = 0;
@@ -166,6 +190,10 @@ public final class Dataset {
             } else {
                 String catID = dimensionCategories.get(entry.getKey());
                 if (catID != null) {
+                    if (!dimension.getCategory().contains(catID)) {
+                        throw new IllegalArgumentException(String.format(
+                                "the dimension %s has no category %s", entry.getKey(), catID));
+                    }
                     indices[index] = dimension.getCategoryIndex(catID);
                 }
                 else {
@@ -192,6 +220,16 @@ public final class Dataset {
 
     }
 
+    private int[] strides() {
+        int[] strides = new int[size.length];
+        int stride = 1;
+        for (int i = size.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= size[i];
+        }
+        return strides;
+    }
+
     private int[] toSizes(Map<String, Dimension> dimensions) {
         int[] sizes = new int[dimensions.size()];
         int i = 0;
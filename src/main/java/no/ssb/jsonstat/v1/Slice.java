@@ -0,0 +1,76 @@
+package no.ssb.jsonstat.v1;
+
+import com.google.common.collect.ImmutableList;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * A sub-cube of a {@link Dataset}: some dimensions are fixed to one category, the others are free.
+ * <p>
+ * The slice is a read-only view of the values of the dataset, in row-major order of the free dimensions.
+ * The offset of each value is computed from the strides of the free dimensions, nothing is copied.
+ */
+public final class Slice extends AbstractList<Data> implements RandomAccess {
+    private final List<Data> values;
+    private final int base;
+    private final List<Dimension> dimensions;
+    private final int[] sizes;
+    private final int[] strides;
+    private final int size;
+
+    Slice(List<Data> values, int base, List<Dimension> dimensions, int[] strides) {
+        this.values = values;
+        this.base = base;
+        this.dimensions = ImmutableList.copyOf(dimensions);
+        this.strides = strides;
+        this.sizes = new int[dimensions.size()];
+        int size = 1;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = dimensions.get(i).getSize();
+            size *= sizes[i];
+        }
+        this.size = size;
+    }
+
+    /**
+     * Return the free dimensions, in the order of the dataset.
+     */
+    public List<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Return the value at the given category indices of the free dimensions.
+     *
+     * @param indices one category index per free dimension, in order
+     */
+    public Data getValue(int... indices) {
+        checkArgument(indices.length == sizes.length, "expected %s indices, got %s", sizes.length, indices.length);
+        int offset = base;
+        for (int i = 0; i < sizes.length; i++) {
+            offset += checkElementIndex(indices[i], sizes[i]) * strides[i];
+        }
+        return values.get(offset);
+    }
+
+    @Override
+    public Data get(int index) {
+        checkElementIndex(index, size);
+        int offset = base;
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            offset += (index % sizes[i]) * strides[i];
+            index /= sizes[i];
+        }
+        return values.get(offset);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
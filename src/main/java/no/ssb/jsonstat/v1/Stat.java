@@ -4,37 +4,124 @@ import no.ssb.jsonstat.v1.parser.JacksonStatParser;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.IntFunction;
 
 
+/**
+ * A JSON-stat 1.0 bundle.
+ * <p>
+ * The datasets are either given up front or loaded on first access with a loader, see
+ * {@link #parseLazily(InputStream)}. Loaded datasets are kept.
+ */
 public final class Stat {
+    private final List<String> ids = new ArrayList<>();
     private final List<Dataset> datasets = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final IntFunction<Dataset> loader;
 
     public Stat(List<Dataset> datasets) {
-        this.datasets.addAll(datasets);
+        for (Dataset dataset : datasets) {
+            this.ids.add(dataset.getId());
+            this.datasets.add(dataset);
+        }
+        this.loader = null;
+        index();
     }
 
-    public List<Dataset> getDatasets() {
-        return Collections.unmodifiableList(datasets);
+    /**
+     * Create a bundle whose datasets are loaded on demand.
+     *
+     * @param ids    the ids of the datasets, in order
+     * @param loader called with the position of a dataset the first time it is requested
+     */
+    public Stat(List<String> ids, IntFunction<Dataset> loader) {
+        this.ids.addAll(ids);
+        this.datasets.addAll(Collections.<Dataset>nCopies(ids.size(), null));
+        this.loader = loader;
+        index();
     }
 
-    public Optional<Dataset> getDataset(final String id) {
+    private void index() {
+        for (int i = 0; i < ids.size(); i++) {
+            positions.putIfAbsent(ids.get(i), i);
+        }
+    }
 
-        return datasets.stream().filter(dataset -> dataset.getId().equals(id)).findFirst();
+    /**
+     * Return the datasets, in order. Lazy datasets are all loaded and a copy is returned, so that the list is
+     * not modified by later loads.
+     */
+    public List<Dataset> getDatasets() {
+        if (loader == null) {
+            return Collections.unmodifiableList(datasets);
+        }
+        synchronized (this) {
+            for (int i = 0; i < ids.size(); i++) {
+                load(i);
+            }
+            return Collections.unmodifiableList(new ArrayList<>(datasets));
+        }
+    }
+
+    /**
+     * Return the ids of the datasets, in order, without loading them.
+     */
+    public List<String> getIds() {
+        return Collections.unmodifiableList(ids);
+    }
 
+    public Optional<Dataset> getDataset(final String id) {
+        Integer position = positions.get(id);
+        return position != null ? Optional.of(load(position)) : Optional.<Dataset>empty();
     }
 
     public Optional<Dataset> getDataset(final int index) {
-        return index < datasets.size() ? Optional.of(getDatasets().get(index)) : Optional.<Dataset>empty();
+        return index < ids.size() ? Optional.of(load(index)) : Optional.<Dataset>empty();
+    }
+
+    private synchronized Dataset load(int position) {
+        Dataset dataset = datasets.get(position);
+        if (dataset == null) {
+            dataset = loader.apply(position);
+            datasets.set(position, dataset);
+        }
+        return dataset;
     }
 
     public static Stat parse(InputStream stream) throws IOException {
         return new JacksonStatParser().parse(stream);
     }
 
+    /**
+     * Read a bundle but only parse its datasets when they are requested.
+     *
+     * @see JacksonStatParser#parseLazily(InputStream)
+     */
+    public static Stat parseLazily(InputStream stream) throws IOException {
+        return new JacksonStatParser().parseLazily(stream);
+    }
+
+    /**
+     * Read a bundle file but only parse its datasets when they are requested.
+     *
+     * @see JacksonStatParser#parseLazily(Path)
+     */
+    public static Stat parseLazily(Path path) throws IOException {
+        return new JacksonStatParser().parseLazily(path);
+    }
+
+    /**
+     * Bundles are equal if they have the same datasets, whether they were parsed lazily or not.
+     * <p>
+     * This loads all the datasets of both bundles, as does {@link #hashCode()}.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -42,13 +129,13 @@ public final class Stat {
 
         Stat stat = (Stat) o;
 
-        if (!datasets.equals(stat.datasets)) return false;
+        if (!ids.equals(stat.ids)) return false;
 
-        return true;
+        return getDatasets().equals(stat.getDatasets());
     }
 
     @Override
     public int hashCode() {
-        return datasets.hashCode();
+        return getDatasets().hashCode();
     }
 }
@@ -1,16 +1,32 @@
 package no.ssb.jsonstat.v1.parser;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 import no.ssb.jsonstat.v1.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.CharConversionException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
 import java.util.*;
 
+/**
+ * Parses JSON-stat 1.0 bundles.
+ * <p>
+ * The documents are read token by token, the values and dimensions are built directly from the parser
+ * events without going through a {@link com.fasterxml.jackson.databind.JsonNode} tree.
+ */
 public class JacksonStatParser {
     private ObjectMapper mapper;
 
@@ -23,120 +39,374 @@ public class JacksonStatParser {
     }
 
     public Stat parse(InputStream stream) throws IOException {
-        try(InputStream is = stream) {
-            JsonNode tree = mapper.readTree(is);
-            return parse((ObjectNode)tree);
+        try (InputStream is = stream; JsonParser parser = mapper.getFactory().createParser(is)) {
+            return parse(parser);
         }
     }
 
-    private Stat parse(ObjectNode tree) {
-        Iterator<Map.Entry<String,JsonNode>> fields = tree.fields();
+    /**
+     * Read a bundle but only parse its datasets when they are first requested.
+     * <p>
+     * The whole bundle is read into a byte array and scanned once, skipping the content of the datasets, to
+     * find where each dataset starts and ends. Getting one dataset then only parses that part of the array.
+     * See {@link #parseLazily(Path)} to avoid copying a large file in memory.
+     */
+    public Stat parseLazily(InputStream stream) throws IOException {
+        try (InputStream is = stream) {
+            return parseLazily(ByteStreams.toByteArray(is));
+        }
+    }
+
+    /**
+     * Read a bundle but only parse its datasets when they are first requested. See {@link #parseLazily(InputStream)}.
+     * The array must not be modified afterwards.
+     */
+    public Stat parseLazily(byte[] bundle) throws IOException {
+        return parseLazily((offset, length) -> new ByteArrayInputStream(bundle, offset, length), bundle.length);
+    }
+
+    /**
+     * Read a bundle file but only parse its datasets when they are first requested. See
+     * {@link #parseLazily(InputStream)}.
+     * <p>
+     * The file is memory mapped instead of being read in memory, it must not be modified afterwards and can not
+     * be larger than 2GB.
+     */
+    public Stat parseLazily(Path bundle) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(bundle, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("the file " + bundle + " is larger than 2GB");
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return parseLazily((offset, length) -> {
+            ByteBuffer range = buffer.duplicate();
+            range.limit(offset + length).position(offset);
+            return new ByteBufferInputStream(range);
+        }, buffer.capacity());
+    }
+
+    /**
+     * Find the ranges of the datasets and return a bundle that parses them from the source on demand.
+     */
+    private Stat parseLazily(ByteSource source, int size) throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+
+        // Jackson does not count the byte order mark, start after it so that the offsets are positions.
+        int offset = contentOffset(source, size);
+        try (JsonParser parser = mapper.getFactory().createParser(source.open(offset, size - offset))) {
+            expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                ids.add(parser.getCurrentName());
+                expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+                long start = parser.getTokenLocation().getByteOffset();
+                parser.skipChildren();
+                long end = parser.getCurrentLocation().getByteOffset();
+                if (start < 0 || end < 0)
+                    throw new JsonParseException(parser, "lazy parsing requires a UTF-8 bundle");
+                ranges.add(new int[]{offset + (int) start, (int) (end - start)});
+            }
+        }
+
+        return new Stat(ids, position -> {
+            int[] range = ranges.get(position);
+            try (JsonParser parser = mapper.getFactory().createParser(source.open(range[0], range[1]))) {
+                parser.nextToken();
+                return parseDataset(ids.get(position), parser);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Return the offset of the content, after the UTF-8 byte order mark if there is one.
+     * <p>
+     * Other encodings are detected like in RFC 4627: a UTF-16 or UTF-32 byte order mark, or a zero byte in
+     * the first two bytes since the first two characters of a JSON text are ASCII.
+     *
+     * @throws CharConversionException if the bundle is not encoded in UTF-8
+     */
+    private static int contentOffset(ByteSource source, int size) throws IOException {
+        byte[] head = new byte[3];
+        int length;
+        try (InputStream is = source.open(0, Math.min(head.length, size))) {
+            length = ByteStreams.read(is, head, 0, head.length);
+        }
+        int first = length > 0 ? head[0] & 0xFF : -1;
+        int second = length > 1 ? head[1] & 0xFF : -1;
+        int third = length > 2 ? head[2] & 0xFF : -1;
+        if (first == 0xEF && second == 0xBB && third == 0xBF)
+            return 3;
+        if (first == 0xFE || first == 0xFF || first == 0 || second == 0)
+            throw new CharConversionException("lazy parsing requires a UTF-8 bundle");
+        return 0;
+    }
+
+    private Stat parse(JsonParser parser) throws IOException {
+        expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
         List<Dataset> datasets = new ArrayList<>();
 
-        while (fields.hasNext()) {
-            Map.Entry<String, JsonNode> next = fields.next();
-            datasets.add(parseDataset(next));
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String id = parser.getCurrentName();
+            parser.nextToken();
+            datasets.add(parseDataset(id, parser));
         }
         return new Stat(datasets);
     }
 
-    private Dataset parseDataset(Map.Entry<String, JsonNode> entry) {
-        JsonNode node = entry.getValue();
+    /**
+     * Parse a dataset, the parser must be on the start of the dataset object.
+     */
+    private Dataset parseDataset(String id, JsonParser parser) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
         Optional<String> label = Optional.empty();
         Optional<Instant> updated = Optional.empty();
-        List<Data> values = Lists.newArrayList();
-        if (node.has("label")) {
-            label = Optional.ofNullable(node.get("label").asText());
-        }
-        if (node.hasNonNull("updated")) {
-            updated = Optional.ofNullable(Instant.parse(node.get("updated").asText()));
+        List<Data> values = new ArrayList<>();
+        Map<String, Dimension> dimensions = new LinkedHashMap<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "label":
+                    label = Optional.ofNullable(asText(parser));
+                    break;
+                case "updated":
+                    if (token != JsonToken.VALUE_NULL) {
+                        updated = Optional.ofNullable(Instant.parse(asText(parser)));
+                    }
+                    break;
+                case "value":
+                    if (token != JsonToken.VALUE_NULL) {
+                        parseValues(parser, values);
+                    }
+                    break;
+                case "dimension":
+                    if (token != JsonToken.VALUE_NULL) {
+                        dimensions = parseDimensions(parser);
+                    }
+                    break;
+                default:
+                    //Handle status...
+                    parser.skipChildren();
+            }
         }
 
-        if (node.hasNonNull("value")) {
-            for(JsonNode v : node.get("value")) {
-                Object value;
-                if (v.isNumber()) {
-                    value = v.decimalValue();
-                } else {
-                    value = v.asText();
-                }
-                if (value != null) {
-                    values.add(new Data(value, Optional.empty())); //Handle status...
-                }
+        return new Dataset(id, label, values, updated, dimensions);
+    }
+
+    /**
+     * Read the value array, or the values of the value object, in order.
+     */
+    private void parseValues(JsonParser parser, List<Data> values) throws IOException {
+        JsonToken end = parser.currentToken() == JsonToken.START_OBJECT ? JsonToken.END_OBJECT : JsonToken.END_ARRAY;
+        JsonToken token;
+        while ((token = parser.nextToken()) != end) {
+            if (token == JsonToken.FIELD_NAME) {
+                continue;
             }
+            Object value;
+            if (token.isNumeric()) {
+                value = decimalValue(parser);
+            } else {
+                value = asText(parser);
+            }
+            values.add(new Data(value, Optional.empty()));
         }
-        Map<String, Dimension> dimensions = new LinkedHashMap<>();
+    }
 
-        if (node.hasNonNull("dimension")) {
-            JsonNode dims = node.get("dimension");
-            JsonNode ids = dims.get("id");
-            JsonNode sizes = dims.get("size");
-            for (int i = 0; i < ids.size(); i++) {
-                String id = ids.get(i).asText();
-                int currentSize = sizes.get(i).intValue();
-                if (dims.hasNonNull(id)) {
-                    JsonNode dimension = dims.get(id);
-                    dimensions.put(id, parseDimension(i, id, currentSize, dimension));
-                }
+    /**
+     * Read the dimension object. The dimensions can appear before or after id and size so they are kept
+     * aside until the end of the object.
+     */
+    private Map<String, Dimension> parseDimensions(JsonParser parser) throws IOException {
+        List<String> ids = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        Map<String, Optional<String>> labels = new HashMap<>();
+        Map<String, Category> categories = new HashMap<>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "id":
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        ids.add(asText(parser));
+                    }
+                    break;
+                case "size":
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        sizes.add(parser.getValueAsInt());
+                    }
+                    break;
+                case "role":
+                    parser.skipChildren();
+                    break;
+                default:
+                    if (token == JsonToken.START_OBJECT) {
+                        parseDimension(parser, field, labels, categories);
+                    } else {
+                        parser.skipChildren();
+                    }
             }
         }
 
-        return new Dataset(entry.getKey(), label, values, updated, dimensions);
+        Map<String, Dimension> dimensions = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            if (categories.containsKey(id)) {
+                //handle roles
+                dimensions.put(id, new Dimension(i, id, sizes.get(i), labels.get(id), categories.get(id), Optional.<Role>empty()));
+            }
+        }
+        return dimensions;
     }
 
-    private Dimension parseDimension(int index, String id, int currentSize, JsonNode dimension) {
+    private void parseDimension(JsonParser parser, String id, Map<String, Optional<String>> labels,
+                                Map<String, Category> categories) throws IOException {
         Optional<String> label = Optional.empty();
+        Category category = null;
 
-        if (dimension.has("label")) {
-            label = Optional.ofNullable(dimension.get("label").asText());
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("label")) {
+                label = Optional.ofNullable(asText(parser));
+            } else if (field.equals("category") && token == JsonToken.START_OBJECT) {
+                category = parseCategory(parser);
+            } else {
+                parser.skipChildren();
+            }
         }
-        JsonNode category = dimension.get("category");
-
 
-        return new Dimension(index, id, currentSize, label, parseCategory(category), Optional.<Role>empty()); //handle roles
+        labels.put(id, label);
+        categories.put(id, category != null ? category : new Category(
+                Collections.<String, Integer>emptyMap(),
+                Collections.<String, String>emptyMap(),
+                Collections.<String, List<String>>emptyMap()
+        ));
     }
 
-    private Category parseCategory(JsonNode category) {
+    private Category parseCategory(JsonParser parser) throws IOException {
         Map<String, Integer> indices = new LinkedHashMap<>();
         Map<String, String> labels = new LinkedHashMap<>();
         Map<String, List<String>> children = new LinkedHashMap<>();
-        if (category != null) {
-            if (category.has("index")) {
-                JsonNode index = category.get("index");
-                if (index.isArray()) {
-                    int i = 0;
-                    for (JsonNode id : index) {
-                        indices.put(id.asText(), i);
-                        i++;
-                    }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (field.equals("index") && token == JsonToken.START_ARRAY) {
+                int i = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    indices.put(asText(parser), i);
+                    i++;
                 }
-                Iterator<Map.Entry<String, JsonNode>> fields = index.fields();
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = fields.next();
-                    indices.put(entry.getKey(), entry.getValue().intValue());
+            } else if (field.equals("index") && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String id = parser.getCurrentName();
+                    parser.nextToken();
+                    indices.put(id, parser.getValueAsInt());
                 }
-            }
-            if (category.has("label")) {
-                JsonNode label = category.get("label");
-                Iterator<Map.Entry<String, JsonNode>> fields = label.fields();
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = fields.next();
-                    labels.put(entry.getKey(), entry.getValue().asText());
+            } else if (field.equals("label") && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String id = parser.getCurrentName();
+                    parser.nextToken();
+                    labels.put(id, asText(parser));
                 }
-            }
-            if (category.has("child")) {
-                JsonNode child = category.get("child");
-                Iterator<Map.Entry<String, JsonNode>> fields = child.fields();
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> entry = fields.next();
+            } else if (field.equals("child") && token == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String id = parser.getCurrentName();
                     List<String> c = new ArrayList<>();
-                    for (JsonNode node : entry.getValue()) {
-                        c.add(node.asText());
+                    if (parser.nextToken() == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() != JsonToken.END_ARRAY) {
+                            c.add(asText(parser));
+                        }
+                    } else {
+                        parser.skipChildren();
                     }
-                    children.put(entry.getKey(), c);
+                    children.put(id, c);
                 }
+            } else {
+                parser.skipChildren();
             }
         }
         return new Category(indices, labels, children);
     }
+
+    /**
+     * Convert the current number like {@link com.fasterxml.jackson.databind.JsonNode#decimalValue()} does:
+     * decimals go through a double.
+     */
+    private static BigDecimal decimalValue(JsonParser parser) throws IOException {
+        switch (parser.getNumberType()) {
+            case INT:
+            case LONG:
+                return BigDecimal.valueOf(parser.getLongValue());
+            case BIG_INTEGER:
+                return new BigDecimal(parser.getBigIntegerValue());
+            default:
+                return BigDecimal.valueOf(parser.getDoubleValue());
+        }
+    }
+
+    /**
+     * Return the text of the current scalar like {@link com.fasterxml.jackson.databind.JsonNode#asText()}
+     * does, "null" for null. Objects and arrays are skipped and return an empty string.
+     */
+    private static String asText(JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return "null";
+        }
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "expected " + expected + " but got " + actual);
+        }
+    }
+
+    /**
+     * Opens a range of the bytes of a bundle.
+     */
+    private interface ByteSource {
+        InputStream open(int offset, int length);
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0)
+                return 0;
+            if (!buffer.hasRemaining())
+                return -1;
+            int length = Math.min(len, buffer.remaining());
+            buffer.get(b, off, length);
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
 }
@@ -5,18 +5,43 @@ import com.google.common.collect.Lists;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Iterates over all the combinations of indices of the given lengths, last index first (row-major order).
+ * <p>
+ * {@link #next()} returns a copy of each combination. To avoid allocating, use {@link #nextInPlace()} that
+ * returns the same array every time, or the {@link #spliterator()}. The position can be moved with
+ * {@link #advance(int)} and {@link #seek(int)}, the flat index of a combination being its position in the
+ * iteration.
+ */
 public class IntCartesianProduct implements Iterable<int[]>, Iterator<int[]> {
 
     private final int[] _lengths;
     private final int[] _indices;
+    private final int[] _current;
+    private final int[] _strides;
+    private final int size;
     private final int maxIndex;
-    private boolean _hasNext = true;
+    private int position = 0;
 
     public IntCartesianProduct(int[] lengths) {
         _lengths = Arrays.copyOf(lengths, lengths.length);
         _indices = new int[lengths.length];
+        _current = new int[lengths.length];
+        _strides = new int[lengths.length];
+        int size = 1;
+        for (int i = lengths.length - 1; i >= 0; i--) {
+            checkArgument(lengths[i] >= 0, "negative length");
+            _strides[i] = size;
+            size = Math.multiplyExact(size, lengths[i]);
+        }
+        this.size = size;
         maxIndex = findMaxIndex(_lengths);
     }
 
@@ -35,29 +60,102 @@ public class IntCartesianProduct implements Iterable<int[]>, Iterator<int[]> {
     }
 
     public boolean hasNext() {
-        return _hasNext;
+        return position < size;
     }
 
     public int[] next() {
-        int[] result = Arrays.copyOf(_indices, _indices.length);
-        for (int i = _indices.length - 1; i >= 0; i--) {
-            if (_indices[i] == _lengths[i] - 1) {
-                _indices[i] = 0;
-                if (i == 0) {
-                    _hasNext = false;
-                }
+        return Arrays.copyOf(nextInPlace(), _indices.length);
+    }
+
+    /**
+     * Return the next combination in an array that is reused by every call.
+     */
+    public int[] nextInPlace() {
+        if (position >= size) {
+            throw new NoSuchElementException();
+        }
+        System.arraycopy(_indices, 0, _current, 0, _indices.length);
+        increment(_indices, _lengths);
+        position++;
+        return _current;
+    }
+
+    /**
+     * Skip the next k combinations.
+     *
+     * @throws IllegalArgumentException if k is negative
+     */
+    public void advance(int k) {
+        checkArgument(k >= 0, "cannot advance backwards");
+        seek((int) Math.min((long) position + k, size));
+    }
+
+    /**
+     * Move to the combination at the given flat index, the next call to {@link #next()} returns it.
+     *
+     * @throws IllegalArgumentException if the flat index is negative or greater than {@link #size()}
+     */
+    public void seek(int flatIndex) {
+        checkArgument(flatIndex >= 0 && flatIndex <= size, "flat index %s outside of [0, %s]", flatIndex, size);
+        position = flatIndex;
+        if (flatIndex < size) {
+            decode(flatIndex, _indices);
+        } else {
+            Arrays.fill(_indices, 0);
+        }
+    }
+
+    /**
+     * Return the flat index of the next combination.
+     */
+    public int position() {
+        return position;
+    }
+
+    /**
+     * Return the number of combinations, that is the product of the lengths.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Write the combination at the given flat index into indices.
+     */
+    public void decode(int flatIndex, int[] indices) {
+        for (int i = 0; i < _strides.length; i++) {
+            indices[i] = flatIndex / _strides[i];
+            flatIndex -= indices[i] * _strides[i];
+        }
+    }
+
+    private static void increment(int[] indices, int[] lengths) {
+        for (int i = indices.length - 1; i >= 0; i--) {
+            if (indices[i] == lengths[i] - 1) {
+                indices[i] = 0;
             } else {
-                _indices[i]++;
+                indices[i]++;
                 break;
             }
         }
-        return result;
     }
 
     public Iterator<int[]> iterator() {
         return this;
     }
 
+    /**
+     * Return a spliterator over the remaining combinations that splits by ranges of flat indices, for
+     * parallel traversal.
+     * <p>
+     * The combinations are not copied: each split passes the same array to its consumer every time, clone
+     * it to keep it. Iterating the spliterator does not move this iterator.
+     */
+    @Override
+    public Spliterator<int[]> spliterator() {
+        return new RangeSpliterator(position, size);
+    }
+
     public List<int[]> asList() {
         return Lists.newArrayList((Iterable<int[]>) this);
     }
@@ -74,6 +172,64 @@ public class IntCartesianProduct implements Iterable<int[]>, Iterator<int[]> {
         throw new UnsupportedOperationException();
     }
 
+    private class RangeSpliterator implements Spliterator<int[]> {
+
+        private final int[] indices = new int[_lengths.length];
+        private int from;
+        private final int to;
+        private boolean decoded = false;
+
+        private RangeSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super int[]> action) {
+            if (from >= to) {
+                return false;
+            }
+            if (!decoded) {
+                decode(from, indices);
+                decoded = true;
+            } else {
+                increment(indices, _lengths);
+            }
+            from++;
+            action.accept(indices);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super int[]> action) {
+            while (tryAdvance(action)) {
+                // Consumed in tryAdvance.
+            }
+        }
+
+        @Override
+        public Spliterator<int[]> trySplit() {
+            if (to - from < 2) {
+                return null;
+            }
+            int middle = from + (to - from) / 2;
+            Spliterator<int[]> prefix = new RangeSpliterator(from, middle);
+            from = middle;
+            decoded = false;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
     /**
      * Usage example. Prints out
      *
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     CoordinateResolver.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Converts category coordinates to indices in row-major order and back.
+ * <p>
+ * The ordinal of each category is kept in a hash map per dimension and the strides of the dimensions are
+ * precomputed, so that resolving a coordinate is proportional to the number of dimensions rather than the
+ * number of cells.
+ */
+public final class CoordinateResolver {
+
+    private final ImmutableList<ImmutableMap<String, Integer>> ordinals;
+    private final int[] sizes;
+    private final int[] strides;
+    private final int size;
+
+    /**
+     * Create a resolver for the given categories.
+     *
+     * @param categories the categories of each dimension, in order
+     */
+    public CoordinateResolver(List<? extends Collection<String>> categories) {
+        checkNotNull(categories, "categories cannot be null");
+
+        ImmutableList.Builder<ImmutableMap<String, Integer>> ordinals = ImmutableList.builder();
+        this.sizes = new int[categories.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            ImmutableMap.Builder<String, Integer> ordinal = ImmutableMap.builder();
+            int position = 0;
+            for (String category : categories.get(i)) {
+                ordinal.put(category, position++);
+            }
+            ordinals.add(ordinal.build());
+            sizes[i] = position;
+        }
+        this.ordinals = ordinals.build();
+
+        this.strides = new int[sizes.length];
+        int size = 1;
+        for (int i = sizes.length - 1; i >= 0; i--) {
+            strides[i] = size;
+            size = Math.multiplyExact(size, sizes[i]);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Create a resolver for the given dimensions.
+     */
+    public static CoordinateResolver of(Map<String, Dimension> dimensions) {
+        checkNotNull(dimensions, "dimensions cannot be null");
+        ImmutableList.Builder<Collection<String>> categories = ImmutableList.builder();
+        for (Dimension dimension : dimensions.values()) {
+            categories.add(dimension.getCategory().getIndex());
+        }
+        return new CoordinateResolver(categories.build());
+    }
+
+    /**
+     * Return the number of cells, that is the product of the sizes of the dimensions.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Return the number of dimensions.
+     */
+    public int getDimensionCount() {
+        return sizes.length;
+    }
+
+    /**
+     * Return the number of categories of a dimension.
+     */
+    public int getSize(int dimension) {
+        return sizes[dimension];
+    }
+
+    /**
+     * Return the distance between two consecutive categories of a dimension, in cells.
+     */
+    public int getStride(int dimension) {
+        return strides[dimension];
+    }
+
+    /**
+     * Return the ordinal of the category in the given dimension, or -1 if it does not exist.
+     */
+    public int ordinal(int dimension, Object category) {
+        Integer ordinal = ordinals.get(dimension).get(category);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Return the index of the cell at the given categories, or -1 if a category does not exist.
+     *
+     * @param categories one category per dimension, in order
+     */
+    public int indexOf(String... categories) {
+        if (categories.length != sizes.length)
+            return -1;
+        int index = 0;
+        for (int i = 0; i < categories.length; i++) {
+            int ordinal = ordinal(i, categories[i]);
+            if (ordinal == -1)
+                return -1;
+            index += ordinal * strides[i];
+        }
+        return index;
+    }
+
+    /**
+     * Return the index of the cell at the given categories, or -1 if a category does not exist.
+     *
+     * @param categories one category per dimension, in order
+     */
+    public int indexOf(List<?> categories) {
+        if (categories.size() != sizes.length)
+            return -1;
+        int index = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            int ordinal = ordinal(i, categories.get(i));
+            if (ordinal == -1)
+                return -1;
+            index += ordinal * strides[i];
+        }
+        return index;
+    }
+
+    /**
+     * Return the index of the cell at the given category ordinals.
+     *
+     * @param ordinals one ordinal per dimension, in order
+     * @throws IllegalArgumentException  if the number of ordinals does not match the number of dimensions
+     * @throws IndexOutOfBoundsException if an ordinal is outside its dimension
+     */
+    public int indexOf(int[] ordinals) {
+        checkArgument(ordinals.length == sizes.length, "expected %s ordinals, got %s",
+                sizes.length, ordinals.length);
+        int index = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            index += checkElementIndex(ordinals[i], sizes[i]) * strides[i];
+        }
+        return index;
+    }
+
+    /**
+     * Return the index of the cell whose category ordinals are stored in ordinals, starting at offset. This
+     * is used to read tuples packed in a single array.
+     *
+     * @param ordinals an array containing one ordinal per dimension, in order, from offset
+     * @throws IndexOutOfBoundsException if the array is too short or an ordinal is outside its dimension
+     */
+    public int indexOf(int[] ordinals, int offset) {
+        checkPositionIndexes(offset, offset + sizes.length, ordinals.length);
+        int index = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            index += checkElementIndex(ordinals[offset + i], sizes[i]) * strides[i];
+        }
+        return index;
+    }
+
+    /**
+     * Write the category ordinals of the cell at the given index into ordinals.
+     *
+     * @throws IndexOutOfBoundsException if the index is outside the dataset
+     */
+    public void decode(int index, int[] ordinals) {
+        checkElementIndex(index, size);
+        for (int i = 0; i < sizes.length; i++) {
+            ordinals[i] = index / strides[i];
+            index -= ordinals[i] * strides[i];
+        }
+    }
+}
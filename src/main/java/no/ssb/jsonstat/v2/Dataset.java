@@ -17,7 +17,6 @@
  */
 package no.ssb.jsonstat.v2;
 
-import com.codepoetics.protonpack.StreamUtils;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -29,6 +28,7 @@ import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import me.yanaga.guava.stream.MoreCollectors;
 import no.ssb.jsonstat.JsonStat;
@@ -47,12 +47,13 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
 import static com.google.common.base.MoreObjects.firstNonNull;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -97,6 +98,8 @@ public abstract class Dataset extends JsonStat {
     /**
      * Return an {@link ImmutableSet} with the available dimensions in
      * the dataset, in order. It is consistent with {@link #getSize()}.
+     * <p>
+     * Datasets created with {@link #create()} compute it once, when they are built.
      *
      * @see <a href="https://json-stat.org/format/#id">json-stat.org/format/#id</a>
      */
@@ -106,14 +109,53 @@ public abstract class Dataset extends JsonStat {
 
     /**
      * Return an {@link ImmutableMultimap} representing the roles of the dimensions.
+     * <p>
+     * Datasets created with {@link #create()} compute it once, when they are built.
      *
      * @see <a href="https://json-stat.org/format/#role">json-stat.org/format/#role</a>
      */
     public ImmutableMultimap<Dimension.Roles, String> getRole() {
+        return computeRole(getDimension());
+    }
+
+    /**
+     * Return an {@link ImmutableList} with the size of the available dimensions in
+     * the dataset, in order. It is consistent with {@link #getId()}.
+     * <p>
+     * Datasets created with {@link #create()} compute it once, when they are built.
+     *
+     * @see <a href="https://json-stat.org/format/#size">json-stat.org/format/#size</a>
+     */
+    public ImmutableList<Integer> getSize() {
+        return computeSize(getDimension());
+    }
+
+    /**
+     * Return the stride of the dimension at the given position, that is the distance between two consecutive
+     * categories of the dimension in row-major order.
+     *
+     * @param dimension the position of the dimension, in the order of {@link #getId()}
+     * @throws IndexOutOfBoundsException if there is no dimension at this position
+     */
+    @JsonIgnore
+    public int getStride(int dimension) {
+        return getCoordinateResolver().getStride(dimension);
+    }
+
+    /**
+     * Return the number of cells of the dataset, that is the product of the sizes. Missing values are
+     * included.
+     */
+    @JsonIgnore
+    public int getCellCount() {
+        return getCoordinateResolver().size();
+    }
+
+    private static ImmutableMultimap<Dimension.Roles, String> computeRole(Map<String, Dimension> dimensions) {
         ImmutableMultimap.Builder<Dimension.Roles, String> builder;
         builder = ImmutableMultimap.builder();
 
-        for (Map.Entry<String, Dimension> dimensionEntry : getDimension().entrySet()) {
+        for (Map.Entry<String, Dimension> dimensionEntry : dimensions.entrySet()) {
             Dimension.Roles role = dimensionEntry.getValue().getRole();
             if (role != null) {
                 builder.put(role, dimensionEntry.getKey());
@@ -122,14 +164,8 @@ public abstract class Dataset extends JsonStat {
         return builder.build();
     }
 
-    /**
-     * Return an {@link ImmutableList} with the size of the available dimensions in
-     * the dataset, in order. It is consistent with {@link #getId()}.
-     *
-     * @see <a href="https://json-stat.org/format/#size">json-stat.org/format/#size</a>
-     */
-    public ImmutableList<Integer> getSize() {
-        return getDimension()
+    private static ImmutableList<Integer> computeSize(Map<String, Dimension> dimensions) {
+        return dimensions
                 .values()
                 .stream()
                 .map(Dimension::getCategory)
@@ -146,7 +182,7 @@ public abstract class Dataset extends JsonStat {
      * @see <a href="https://json-stat.org/format/#size">json-stat.org/format/#extension</a>
      */
     @JsonProperty("extension")
-    abstract Object getExtension();
+    public abstract Object getExtension();
 
     /**
      * Return the updated time of the dataset.
@@ -178,10 +214,64 @@ public abstract class Dataset extends JsonStat {
 
     /**
      * Return the value sorted according to the dimensions of the dataset.
+     * <p>
+     * The returned map is a view of the {@link #getValueStore() value store} and only contains the non missing
+     * values.
      *
      * @see <a href="https://json-stat.org/format/#value">json-stat.org/format/#value</a>
      */
-    public abstract Map<Integer, Number> getValue();
+    public Map<Integer, Number> getValue() {
+        return getValueStore().asMap();
+    }
+
+    /**
+     * Return the primitive storage of the values.
+     */
+    @JsonIgnore
+    public abstract ValueStore getValueStore();
+
+    /**
+     * Return the kind of storage chosen for the values.
+     */
+    @JsonIgnore
+    public ValueStore.Storage getStorage() {
+        return getValueStore().getStorage();
+    }
+
+    /**
+     * Return the value at the given index in row-major order, or {@link Double#NaN} if it is missing.
+     *
+     * @throws IndexOutOfBoundsException if the index is outside the dataset
+     */
+    public double getDouble(int index) {
+        return getValueStore().getDouble(index);
+    }
+
+    /**
+     * Return true if the value at the given index in row-major order is missing.
+     *
+     * @throws IndexOutOfBoundsException if the index is outside the dataset
+     */
+    public boolean isMissing(int index) {
+        return getValueStore().isMissing(index);
+    }
+
+    /**
+     * Return the {@link CoordinateResolver} of the dataset, that converts category coordinates to indices
+     * in row-major order.
+     */
+    @JsonIgnore
+    public abstract CoordinateResolver getCoordinateResolver();
+
+    /**
+     * Return the index of the value at the given categories in row-major order, or -1 if a category does
+     * not exist.
+     *
+     * @param categories one category per dimension, in the order of {@link #getId()}
+     */
+    public int indexOf(String... categories) {
+        return getCoordinateResolver().indexOf(categories);
+    }
 
     /**
      * Return the values as tuples.
@@ -272,6 +362,8 @@ public abstract class Dataset extends JsonStat {
     /**
      * Utility method that returns a {@link Iterable} of {@link List}s going through the data set
      * row by row and cell by cell, in the order defined by the dimensions.
+     * <p>
+     * The returned collection is a view of the {@link #getValueStore() value store}.
      */
     @JsonIgnore
     public Collection<Number> getRows() {
@@ -286,12 +378,22 @@ public abstract class Dataset extends JsonStat {
         private final ImmutableMap<String, Dimension> dimensions;
         private final ImmutableList<List<String>> indexes;
         private final List<List<String>> indexProduct;
+        private final CoordinateResolver resolver;
+        private final int size;
+
+        // Computed once for all the datasets built.
+        private final ImmutableSet<String> id;
+        private final ImmutableList<Integer> sizes;
+        private final ImmutableMultimap<Dimension.Roles, String> roles;
 
         private final String label;
         private final String source;
         private final Instant updated;
 
         private Object extension;
+        private double densityThreshold = ValueStore.DEFAULT_DENSITY_THRESHOLD;
+        // Values added with addTuple, created on first use.
+        private ValueStore.Builder tuples;
 
         ValuesBuilder(
                 ImmutableSet<Dimension.Builder> dimensions,
@@ -319,15 +421,19 @@ public abstract class Dataset extends JsonStat {
                     .collect(MoreCollectors.toImmutableList());
 
             indexProduct = Lists.cartesianProduct(indexes);
+
+            resolver = new CoordinateResolver(indexes);
+            size = resolver.size();
+
+            id = this.dimensions.keySet();
+            sizes = computeSize(this.dimensions);
+            roles = computeRole(this.dimensions);
         }
 
         @Override
         public DatasetBuildable withValues(Collection<Number> values) {
             checkNotNull(values);
 
-            if (values.isEmpty())
-                return build(Stream.empty());
-
             return withValues(values.stream());
         }
 
@@ -335,10 +441,6 @@ public abstract class Dataset extends JsonStat {
         public DatasetBuildable withValues(Iterable<Number> values) {
             checkNotNull(values);
 
-            // Optimization.
-            if (!values.iterator().hasNext())
-                return build(Stream.empty());
-
             return withValues(StreamSupport.stream(
                     values.spliterator(),
                     false
@@ -349,35 +451,114 @@ public abstract class Dataset extends JsonStat {
         public DatasetBuildable withValues(Stream<Number> values) {
             checkNotNull(values);
 
-            if (Stream.empty().equals(values))
-                return build(Stream.empty());
+            ValueStore.Builder store = ValueStore.builder(size);
+            values.forEachOrdered(store::add);
+
+            return withValues(store);
+        }
+
+        @Override
+        public DatasetBuildable withValues(ValueStore.Builder values) {
+            checkNotNull(values);
+
+            return build(values.withDensityThreshold(densityThreshold).build(size));
+        }
 
-            Stream<Map.Entry<Integer, Number>> entryStream = StreamUtils.zipWithIndex(values)
-                    .map(tuple -> {
-                        Integer dimensionIndex = Math.toIntExact(tuple.getIndex());
-                        Number metric = tuple.getValue();
-                        return new AbstractMap.SimpleEntry<>(
-                                dimensionIndex, metric);
-                    });
+        @Override
+        public DatasetBuildable withValues(ValueStore values) {
+            return build(values);
+        }
 
-            return build(entryStream);
+        @Override
+        public ValuesBuilder withDensityThreshold(double threshold) {
+            checkArgument(threshold >= 0 && threshold <= 1, "threshold must be between 0 and 1");
+            this.densityThreshold = threshold;
+            return this;
         }
 
         @Override
         public DatasetBuildable withMapper(Function<List<String>, Number> mapper) {
             // apply function and unroll.
-            return withValues(indexProduct.stream().map(mapper));
+            // Same store construction as the parallel version, so both give the same dataset.
+            return build(new ParallelMapper(resolver, indexes).map(mapper, densityThreshold));
+        }
+
+        @Override
+        public DatasetBuildable withMapper(Function<List<String>, Number> mapper, Executor executor) {
+            return build(new ParallelMapper(resolver, indexes).map(mapper, executor, densityThreshold));
+        }
+
+        @Override
+        public DatasetBuildable withOrdinalMapper(OrdinalMapper mapper) {
+            checkNotNull(mapper);
+
+            double[] values = new double[size];
+            int[] ordinals = new int[resolver.getDimensionCount()];
+            for (int index = 0; index < size; index++) {
+                values[index] = mapper.applyAsDouble(ordinals);
+
+                // Move to the next cell, last dimension first.
+                for (int d = ordinals.length - 1; d >= 0; d--) {
+                    if (++ordinals[d] < resolver.getSize(d))
+                        break;
+                    ordinals[d] = 0;
+                }
+            }
+            return build(ValueStore.of(values, false, densityThreshold));
         }
 
         @Override
         public ValuesBuilder addTuple(List<String> dimensions, Number value) {
-            // TODO:
+            checkNotNull(dimensions);
+            checkArgument(dimensions.size() == resolver.getDimensionCount(),
+                    "expected %s categories, got %s", resolver.getDimensionCount(), dimensions.size());
+
+            int index = resolver.indexOf(dimensions);
+            checkArgument(index != -1, "could not find the categories %s", dimensions);
+            tuples().set(index, value);
+            return this;
+        }
+
+        @Override
+        public ValuesBuilder addTuple(int[] ordinals, double value) {
+            int index = resolver.indexOf(ordinals);
+            if (!Double.isNaN(value))
+                tuples().set(index, value);
+            return this;
+        }
+
+        @Override
+        public ValuesBuilder addTuples(int[] ordinals, double[] values) {
+            int dimensions = resolver.getDimensionCount();
+            checkArgument(ordinals.length == values.length * dimensions,
+                    "expected %s ordinals for %s values, got %s",
+                    values.length * dimensions, values.length, ordinals.length);
+
+            ValueStore.Builder tuples = tuples();
+            for (int i = 0; i < values.length; i++) {
+                int index = resolver.indexOf(ordinals, i * dimensions);
+                if (!Double.isNaN(values[i]))
+                    tuples.set(index, values[i]);
+            }
             return this;
         }
 
-        public DatasetBuildable build(Stream<Map.Entry<Integer, Number>> entries) {
+        @Override
+        public Dataset build() {
+            // Build from a copy so that more tuples can be added and build() called again.
+            return withValues(tuples().copy()).build();
+        }
+
+        private ValueStore.Builder tuples() {
+            if (tuples == null)
+                tuples = ValueStore.builder(size);
+            return tuples;
+        }
 
-            Map<Integer, Number> values = entries.filter(entry -> entry.getValue() != null).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        public DatasetBuildable build(ValueStore values) {
+            checkNotNull(values);
+            checkArgument(values.size() == size,
+                    "the value store had %s cells, expected %s", values.size(), size);
 
             return new DatasetBuildable() {
                 @Override
@@ -385,28 +566,56 @@ public abstract class Dataset extends JsonStat {
                     return new Dataset(label, source, updated) {
 
                         @Override
-                        Object getExtension() {
+                        public Object getExtension() {
                             return extension;
                         }
 
                         @Override
-                        public Map<Integer, Number> getValue() {
+                        public ValueStore getValueStore() {
                             return values;
                         }
 
+                        @Override
+                        public CoordinateResolver getCoordinateResolver() {
+                            return resolver;
+                        }
+
+                        @Override
+                        public ImmutableSet<String> getId() {
+                            return id;
+                        }
+
+                        @Override
+                        public ImmutableList<Integer> getSize() {
+                            return sizes;
+                        }
+
+                        @Override
+                        public ImmutableMultimap<Dimension.Roles, String> getRole() {
+                            return roles;
+                        }
+
                         @Override
                         public Map<List<String>, Number> asMap() {
                             final Map<List<String>, Number> map = new AbstractMap<List<String>, Number>() {
 
                                 @Override
                                 public Number get(Object key) {
-                                    int index = indexProduct.indexOf(key);
+                                    if (!(key instanceof List))
+                                        return null;
+
+                                    int index = resolver.indexOf((List<?>) key);
                                     if (index == -1)
                                         return null;
 
                                     return values.get(index);
                                 }
 
+                                @Override
+                                public boolean containsKey(Object key) {
+                                    return key instanceof List && resolver.indexOf((List<?>) key) != -1;
+                                }
+
                                 @Override
                                 public Set<Entry<List<String>, Number>> entrySet() {
                                     return new AbstractSet<Entry<List<String>, Number>>() {
@@ -462,7 +671,7 @@ public abstract class Dataset extends JsonStat {
 
     private static class Builder implements DatasetBuilder {
 
-        private final ImmutableSet.Builder<Dimension.Builder> dimensionBuilders;
+        private final Set<Dimension.Builder> dimensionBuilders;
         private final ImmutableList.Builder<Optional<Number>> values;
         private Object extension;
 
@@ -471,7 +680,7 @@ public abstract class Dataset extends JsonStat {
         private Instant update;
 
         private Builder() {
-            this.dimensionBuilders = ImmutableSet.builder();
+            this.dimensionBuilders = Sets.newLinkedHashSet();
             this.values = ImmutableList.builder();
         }
 
@@ -493,16 +702,13 @@ public abstract class Dataset extends JsonStat {
             return this;
         }
 
-        private DatasetBuilder addDimension(Dimension.Builder dimension) {
+        private Builder addDimension(Dimension.Builder dimension) {
             checkNotNull(dimension, "the dimension builder was null");
 
-
-            if (dimensionBuilders.build().contains(dimension))
+            if (!dimensionBuilders.add(dimension))
                 throw new DuplicateDimensionException(
                         String.format("the builder already contains the dimension %s", dimension.toString())
                 );
-
-            dimensionBuilders.add(dimension);
             return this;
         }
 
@@ -518,15 +724,7 @@ public abstract class Dataset extends JsonStat {
         }
 
         public Builder withDimension(Dimension.Builder dimension) {
-            checkNotNull(dimension, "the dimension builder was null");
-
-            if (dimensionBuilders.build().contains(dimension))
-                throw new DuplicateDimensionException(
-                        String.format("the builder already contains the dimension %s", dimension.toString())
-                );
-
-            dimensionBuilders.add(dimension);
-            return this;
+            return addDimension(dimension);
         }
 
         @Override
@@ -543,7 +741,7 @@ public abstract class Dataset extends JsonStat {
         }
 
         ValuesBuilder toValueBuilder() {
-            return new ValuesBuilder(this.dimensionBuilders.build(), this.label, this.source, this.update, this.extension);
+            return new ValuesBuilder(ImmutableSet.copyOf(this.dimensionBuilders), this.label, this.source, this.update, this.extension);
         }
 
     }
@@ -0,0 +1,259 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetSnapshot.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Binary snapshot of a {@link Dataset}, meant to be used as a cache on disk.
+ * <p>
+ * A snapshot contains a JSON header with the metadata of the dataset (label, source, updated, extension and
+ * the dimensions with their roles) followed by the values as a block of little endian doubles and a bitmap of
+ * the missing values. All numbers are little endian:
+ * <pre>
+ *   magic "JSONSTAT", version (int), header length (int), header (UTF-8 JSON), padding to 8 bytes
+ *   size (int), count (int), flags (int), reserved (int)
+ *   values (size doubles, NaN when missing)
+ *   missing bitmap ((size + 63) / 64 longs)
+ * </pre>
+ * The values of a dataset read from a snapshot are not copied, they are read from the mapped file. The value
+ * block is limited to 2GB (about 268 million cells).
+ */
+public final class DatasetSnapshot {
+
+    private static final byte[] MAGIC = "JSONSTAT".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int INTEGRAL = 1;
+    private static final int CHUNK = 8192;
+
+    private final ObjectMapper mapper;
+
+    /**
+     * Create a snapshot reader and writer using a default {@link ObjectMapper} for the header.
+     */
+    public DatasetSnapshot() {
+        this(new ObjectMapper());
+    }
+
+    /**
+     * Create a snapshot reader and writer.
+     *
+     * @param mapper the mapper used to convert the extension of the datasets
+     */
+    public DatasetSnapshot(ObjectMapper mapper) {
+        this.mapper = checkNotNull(mapper);
+    }
+
+    /**
+     * Write the dataset to the file, replacing its content.
+     */
+    public void write(Dataset dataset, Path path) throws IOException {
+        checkNotNull(dataset);
+        ValueStore values = dataset.getValueStore();
+        int size = values.size();
+
+        byte[] header = mapper.writeValueAsBytes(writeHeader(dataset));
+        int position = MAGIC.length + 8 + header.length;
+        int padding = -position & 7;
+
+        try (FileChannel channel = FileChannel.open(path, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(position + padding + 16).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.put(MAGIC).putInt(VERSION).putInt(header.length).put(header);
+            buffer.position(buffer.position() + padding);
+            buffer.putInt(size).putInt(values.count()).putInt(values.isIntegral() ? INTEGRAL : 0).putInt(0);
+            buffer.flip();
+            writeFully(channel, buffer);
+
+            // Values, in chunks.
+            buffer = ByteBuffer.allocate(CHUNK * 8).order(ByteOrder.LITTLE_ENDIAN);
+            double[] chunk = new double[CHUNK];
+            for (int index = 0; index < size; index += CHUNK) {
+                int length = Math.min(CHUNK, size - index);
+                values.copyTo(index, chunk, 0, length);
+                buffer.clear();
+                buffer.asDoubleBuffer().put(chunk, 0, length);
+                buffer.limit(length * 8);
+                writeFully(channel, buffer);
+            }
+
+            // Missing bitmap.
+            long[] missing = new long[(size + 63) >>> 6];
+            for (int index = 0; index < size; index++) {
+                int next = values.nextIndex(index);
+                int end = next < 0 ? size : next;
+                for (; index < end; index++)
+                    missing[index >>> 6] |= 1L << index;
+            }
+            for (int word = 0; word < missing.length; word += CHUNK) {
+                int length = Math.min(CHUNK, missing.length - word);
+                buffer.clear();
+                buffer.asLongBuffer().put(missing, word, length);
+                buffer.limit(length * 8);
+                writeFully(channel, buffer);
+            }
+        }
+    }
+
+    /**
+     * Read a dataset from a snapshot file.
+     * <p>
+     * The file must not be modified while the dataset is in use.
+     *
+     * @throws IllegalArgumentException if the file is not a snapshot
+     */
+    public Dataset read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(MAGIC.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, buffer, 0);
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            checkArgument(Arrays.equals(magic, MAGIC), "%s is not a dataset snapshot", path);
+            int version = buffer.getInt();
+            checkArgument(version == VERSION, "unsupported snapshot version %s", version);
+            int headerLength = buffer.getInt();
+
+            ByteBuffer header = ByteBuffer.allocate(headerLength);
+            readFully(channel, header, MAGIC.length + 8);
+            JsonNode node = mapper.readTree(header.array());
+
+            long position = MAGIC.length + 8 + headerLength;
+            position += -position & 7;
+            ByteBuffer counts = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, counts, position);
+            int size = counts.getInt();
+            int count = counts.getInt();
+            boolean integral = (counts.getInt() & INTEGRAL) != 0;
+            position += 16;
+
+            checkArgument(size <= Integer.MAX_VALUE / 8, "snapshots are limited to 2GB of values");
+            DoubleBuffer values = map(channel, position, size * 8L).asDoubleBuffer();
+            LongBuffer missing = map(channel, position + size * 8L, ((size + 63) >>> 6) * 8L).asLongBuffer();
+
+            return readHeader(node)
+                    .withValues(new SnapshotValueStore(values, missing, count, integral))
+                    .build();
+        }
+    }
+
+    private ObjectNode writeHeader(Dataset dataset) {
+        ObjectNode header = mapper.createObjectNode();
+        dataset.getLabel().ifPresent(label -> header.put("label", label));
+        dataset.getSource().ifPresent(source -> header.put("source", source));
+        dataset.getUpdated().ifPresent(updated -> header.put("updated", updated.toString()));
+        if (dataset.getExtension() != null)
+            header.set("extension", mapper.valueToTree(dataset.getExtension()));
+
+        ArrayNode dimensions = header.putArray("dimension");
+        for (Map.Entry<String, Dimension> entry : dataset.getDimension().entrySet()) {
+            Dimension dimension = entry.getValue();
+            ObjectNode node = dimensions.addObject().put("id", entry.getKey());
+            dimension.getLabel().ifPresent(label -> node.put("label", label));
+            if (dimension.getRole() != null)
+                node.put("role", dimension.getRole().name());
+            ArrayNode index = node.putArray("index");
+            dimension.getCategory().getIndex().forEach(index::add);
+            ObjectNode labels = node.putObject("labels");
+            dimension.getCategory().getLabel().forEach(labels::put);
+        }
+        return header;
+    }
+
+    private DatasetValueBuilder readHeader(JsonNode header) {
+        DatasetBuilder builder = Dataset.create();
+        if (header.has("label"))
+            builder.withLabel(header.get("label").asText());
+        if (header.has("source"))
+            builder.withSource(header.get("source").asText());
+        if (header.has("updated"))
+            builder.updatedAt(Instant.parse(header.get("updated").asText()));
+        if (header.has("extension"))
+            builder.withExtension(header.get("extension"));
+
+        List<Dimension.Builder> dimensions = Lists.newArrayList();
+        for (JsonNode node : header.get("dimension")) {
+            Dimension.Builder dimension = Dimension.create(node.get("id").asText());
+            if (node.has("label"))
+                dimension.withLabel(node.get("label").asText());
+            if (node.has("role"))
+                dimension.withRole(Dimension.Roles.valueOf(node.get("role").asText()));
+
+            ImmutableSet.Builder<String> index = ImmutableSet.builder();
+            node.get("index").forEach(category -> index.add(category.asText()));
+            dimension.withIndex(index.build());
+
+            ImmutableMap.Builder<String, String> labels = ImmutableMap.builder();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.get("labels").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> label = fields.next();
+                labels.put(label.getKey(), label.getValue().asText());
+            }
+            dimension.withIndexedLabels(labels.build());
+
+            dimensions.add(dimension);
+        }
+        return builder.withDimensions(dimensions);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            checkArgument(read >= 0, "unexpected end of the snapshot");
+            position += read;
+        }
+        buffer.flip();
+    }
+}
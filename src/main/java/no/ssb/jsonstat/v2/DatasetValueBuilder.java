@@ -18,10 +18,11 @@
 package no.ssb.jsonstat.v2;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
-public interface DatasetValueBuilder {
+public interface DatasetValueBuilder extends DatasetBuildable {
 
     /**
      * Populate the data set with values.
@@ -68,6 +69,36 @@ public interface DatasetValueBuilder {
      */
     DatasetBuildable withValues(Stream<Number> values);
 
+    /**
+     * Populate the data set with the values accumulated in a {@link ValueStore.Builder}.
+     * <p>
+     * The store is sized to the number of cells of the data set, cells after the last value are missing.
+     *
+     * @param values the value store builder
+     * @throws NullPointerException     if values is null
+     * @throws IllegalArgumentException if the builder contains more values than the data set has cells
+     */
+    DatasetBuildable withValues(ValueStore.Builder values);
+
+    /**
+     * Populate the data set with an existing {@link ValueStore}. The store is used as is.
+     *
+     * @param values the value store
+     * @throws NullPointerException     if values is null
+     * @throws IllegalArgumentException if the size of the store is not the number of cells of the data set
+     */
+    DatasetBuildable withValues(ValueStore values);
+
+    /**
+     * Set the density (ratio of non missing values) under which the values are stored in sparse form.
+     * <p>
+     * Defaults to {@link ValueStore#DEFAULT_DENSITY_THRESHOLD}.
+     *
+     * @param threshold a ratio between 0 and 1
+     * @throws IllegalArgumentException if threshold is not between 0 and 1
+     */
+    DatasetValueBuilder withDensityThreshold(double threshold);
+
     /**
      * Use a mapper function to populate the metrics in the data set.
      * <p>
@@ -83,16 +114,77 @@ public interface DatasetValueBuilder {
      */
     DatasetBuildable withMapper(Function<List<String>, Number> mapper);
 
+    /**
+     * Use a mapper function to populate the metrics in the data set, calling it concurrently on the given
+     * executor.
+     * <p>
+     * The cells are split in contiguous ranges of row-major indices that are mapped in parallel, the values
+     * end up in the same order as with {@link #withMapper(Function)}. The mapper must therefore be thread safe.
+     * Use {@link java.util.concurrent.ForkJoinPool#commonPool()} if there is no dedicated executor.
+     *
+     * @param mapper   a thread safe mapper function to use to populate the metrics in the data set
+     * @param executor the executor that runs the ranges
+     * @throws NullPointerException if mapper or executor is null
+     */
+    DatasetBuildable withMapper(Function<List<String>, Number> mapper, Executor executor);
+
+    /**
+     * Use a mapper function of the category ordinals to populate the metrics in the data set.
+     * <p>
+     * The mapper is called in row-major order like {@link #withMapper(Function)}, but with a single int array
+     * that is updated in place and returns primitive doubles, {@link Double#NaN} being missing. No object is
+     * allocated per cell. The values are stored as decimals.
+     *
+     * @param mapper a mapper function to use to populate the metrics in the data set
+     * @throws NullPointerException if mapper is null
+     */
+    DatasetBuildable withOrdinalMapper(OrdinalMapper mapper);
+
     /**
      * Add a tuple using the dimension values (categories) and values.
      * <p>
-     * Note that this method is permissive in the sense that any category that can
-     * not be found in a dimension will be added after the existing ones.
+     * Tuples can be added in any order and the cells without tuples are missing. When several tuples are
+     * added for a cell the last non null value wins: a null value is ignored, it does not overwrite a value
+     * added before. Call {@link #build()} once all the tuples are added; more tuples can be added afterwards
+     * and {@link #build()} called again.
      *
-     * @throws IllegalArgumentException if a dimension id is missing, present in both parameters or if an
-     *                                  empty map is encountered
-     * @throws NullPointerException     is dimensions or metric is null
+     * @param dimensions one category per dimension, in order
+     * @throws IllegalArgumentException if the number of categories does not match the number of dimensions or
+     *                                  if a category can not be found in its dimension
+     * @throws NullPointerException     is dimensions is null
      */
     DatasetValueBuilder addTuple(List<String> dimensions, Number value);
 
+    /**
+     * Add a tuple using the category ordinals of each dimension. See {@link #addTuple(List, Number)}.
+     *
+     * @param ordinals one ordinal per dimension, in order
+     * @param value    the value, {@link Double#NaN} is ignored like null
+     * @throws IllegalArgumentException  if the number of ordinals does not match the number of dimensions
+     * @throws IndexOutOfBoundsException if an ordinal is outside its dimension
+     */
+    DatasetValueBuilder addTuple(int[] ordinals, double value);
+
+    /**
+     * Add a batch of tuples using the category ordinals of each dimension. See {@link #addTuple(List, Number)}.
+     * <p>
+     * The ordinals of the tuples are packed in a single array: the ordinals of the nth tuple start at
+     * n times the number of dimensions.
+     *
+     * @param ordinals the ordinals of the tuples, one per dimension and per value
+     * @param values   the values, {@link Double#NaN} is ignored like null
+     * @throws IllegalArgumentException  if the number of ordinals is not the number of values times the number
+     *                                   of dimensions
+     * @throws IndexOutOfBoundsException if an ordinal is outside its dimension
+     */
+    DatasetValueBuilder addTuples(int[] ordinals, double[] values);
+
+    /**
+     * Build the data set with the tuples added so far.
+     *
+     * @see #addTuple(List, Number)
+     */
+    @Override
+    Dataset build();
+
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DenseValueStore.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import java.util.BitSet;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * A {@link ValueStore} backed by a double array and a missing value bitmap.
+ */
+final class DenseValueStore extends ValueStore {
+
+    private final double[] values;
+    private final BitSet missing;
+    private final boolean integral;
+    private final int count;
+
+    DenseValueStore(double[] values, BitSet missing, boolean integral) {
+        this.values = values;
+        this.missing = missing;
+        this.integral = integral;
+        this.count = values.length - missing.cardinality();
+    }
+
+    @Override
+    public Storage getStorage() {
+        return Storage.DENSE;
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isMissing(int index) {
+        checkElementIndex(index, values.length);
+        return missing.get(index);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        if (isMissing(index))
+            return Double.NaN;
+        return values[index];
+    }
+
+    @Override
+    public void copyTo(int index, double[] target, int offset, int length) {
+        checkPositionIndexes(index, index + length, values.length);
+        System.arraycopy(values, index, target, offset, length);
+        int end = index + length;
+        for (int i = missing.nextSetBit(index); i >= 0 && i < end; i = missing.nextSetBit(i + 1)) {
+            target[offset + i - index] = Double.NaN;
+        }
+    }
+
+    @Override
+    public int nextIndex(int fromIndex) {
+        int index = missing.nextClearBit(fromIndex);
+        return index < values.length ? index : -1;
+    }
+
+    @Override
+    public boolean isIntegral() {
+        return integral;
+    }
+}
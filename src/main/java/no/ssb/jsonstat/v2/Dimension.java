@@ -23,7 +23,7 @@ import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import me.yanaga.guava.stream.MoreCollectors;
 
@@ -31,6 +31,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -159,16 +160,21 @@ public class Dimension {
 
         // TODO: hasRole
         private final String id;
-        private final ImmutableSet.Builder<String> index;
-        private final ImmutableMap.Builder<String, String> labels;
+        // Ordinal of the categories, in order.
+        private final Map<String, Integer> index;
+        private final Map<String, String> labels;
+
+        // Immutable copies returned by getIndex() and build(), reset when a category is added.
+        private ImmutableSet<String> indexCopy;
+        private ImmutableMap<String, String> labelsCopy;
 
         private String label;
         private Roles role;
 
         private Builder(String id) {
             this.id = id;
-            this.index = ImmutableSet.builder();
-            this.labels = ImmutableMap.builder();
+            this.index = Maps.newLinkedHashMap();
+            this.labels = Maps.newLinkedHashMap();
             // Use Dimension.create()
         }
 
@@ -198,7 +204,7 @@ public class Dimension {
 
         // TODO: Should this be accessible at this stage? Maybe best to delay until dimension are build.
         protected Integer size() {
-            return index.build().size();
+            return index.size();
         }
 
         public Builder withRole(final Roles role) {
@@ -231,7 +237,7 @@ public class Dimension {
         }
 
         public Builder withLabels(ImmutableList<String> categories) {
-            final Integer[] size = {labels.build().size()};
+            final Integer[] size = {labels.size()};
             Map<String, String> newIndexedLabels = categories.stream()
                     .collect(
                             MoreCollectors.toImmutableMap(s ->
@@ -245,8 +251,8 @@ public class Dimension {
         }
 
         public Builder withIndex(ImmutableSet<String> index) {
-          this.index.addAll(index);
-          return this;
+            index.forEach(this::addIndex);
+            return this;
         }
 
         /**
@@ -255,12 +261,20 @@ public class Dimension {
          * @param indexedLabels
          */
         public Builder withIndexedLabels(ImmutableMap<String, String> indexedLabels) {
-            // TODO: index seems unnecessary, we could use index.keySet()
-            index.addAll(indexedLabels.keySet());
-            labels.putAll(indexedLabels);
+            for (Map.Entry<String, String> label : indexedLabels.entrySet()) {
+                checkArgument(labels.putIfAbsent(label.getKey(), label.getValue()) == null,
+                        "the dimension %s already contains a label for %s", id, label.getKey());
+                labelsCopy = null;
+                addIndex(label.getKey());
+            }
             return this;
         }
 
+        private void addIndex(String category) {
+            if (index.putIfAbsent(category, index.size()) == null)
+                indexCopy = null;
+        }
+
         /**
          * Set GEO role.
          * <p>
@@ -296,15 +310,19 @@ public class Dimension {
 
         public Dimension build() {
             Category category = new Category();
-            category.index = this.index.build();
-            category.label = this.labels.build();
+            category.index = getIndex();
+            if (labelsCopy == null)
+                labelsCopy = ImmutableMap.copyOf(this.labels);
+            category.label = labelsCopy;
             Dimension dimension = new Dimension(category, this.role);
             dimension.setLabel(this.label);
             return dimension;
         }
 
         public ImmutableSet<String> getIndex() {
-            return index.build();
+            if (indexCopy == null)
+                indexCopy = ImmutableSet.copyOf(index.keySet());
+            return indexCopy;
         }
 
         protected boolean isMetric() {
@@ -315,14 +333,18 @@ public class Dimension {
             return this.role;
         }
 
+        /**
+         * Return true if the category was added to the dimension.
+         */
         public boolean contains(String index) {
-            // TODO: Optimize this.
-            return this.labels.build().containsKey(index);
+            return this.index.containsKey(index);
         }
 
+        /**
+         * Return the position of the category in the dimension, or -1 if it was not added.
+         */
         public Integer indexOf(String index) {
-            // TODO: Optimize this.
-            return Lists.newArrayList(this.labels.build().keySet()).indexOf(index);
+            return this.index.getOrDefault(index, -1);
         }
     }
 }
@@ -0,0 +1,36 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     OrdinalMapper.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+/**
+ * Computes the value of a cell from the ordinals of its categories.
+ *
+ * @see DatasetValueBuilder#withOrdinalMapper(OrdinalMapper)
+ */
+@FunctionalInterface
+public interface OrdinalMapper {
+
+    /**
+     * Return the value of the cell, or {@link Double#NaN} if it is missing.
+     * <p>
+     * The array is reused from one cell to the next, it must not be modified or kept after the call.
+     *
+     * @param ordinals the ordinal of the category of each dimension, in order
+     */
+    double applyAsDouble(int[] ordinals);
+}
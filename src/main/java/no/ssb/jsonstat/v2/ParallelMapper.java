@@ -0,0 +1,157 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     ParallelMapper.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Evaluates a mapper function over every cell of a dataset using an {@link Executor}.
+ * <p>
+ * The flat index space is split in contiguous ranges. Each range decodes the coordinates of its first cell
+ * with the {@link CoordinateResolver} and then increments them like an odometer, the results are written in
+ * a shared double array at their row-major index so that the output does not depend on the scheduling.
+ */
+final class ParallelMapper {
+
+    // Number of ranges per thread, more ranges balance the load better when the mapper cost varies.
+    private static final int RANGES_PER_THREAD = 4;
+
+    private final CoordinateResolver resolver;
+    private final List<? extends List<String>> indexes;
+
+    ParallelMapper(CoordinateResolver resolver, List<? extends List<String>> indexes) {
+        this.resolver = checkNotNull(resolver);
+        this.indexes = checkNotNull(indexes);
+    }
+
+    /**
+     * Apply the mapper to all the cells and return the results in a store.
+     *
+     * When the mapper fails the other ranges stop at their next cell, and the method returns once they have
+     * all stopped.
+     *
+     * @throws RuntimeException the exception thrown by the mapper, the one of the first range if several failed
+     */
+    ValueStore map(Function<List<String>, Number> mapper, Executor executor, double threshold) {
+        checkNotNull(mapper);
+        checkNotNull(executor);
+
+        int size = resolver.size();
+        double[] values = new double[size];
+
+        int parallelism = executor instanceof ForkJoinPool
+                ? ((ForkJoinPool) executor).getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        int ranges = (int) Math.min(size, (long) parallelism * RANGES_PER_THREAD);
+
+        AtomicBoolean failed = new AtomicBoolean(false);
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        CompletableFuture<Boolean>[] futures = new CompletableFuture[ranges];
+        for (int i = 0; i < ranges; i++) {
+            int from = (int) ((long) size * i / ranges);
+            int to = (int) ((long) size * (i + 1) / ranges);
+            futures[i] = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return map(mapper, values, from, to, failed);
+                } catch (RuntimeException | Error e) {
+                    failed.set(true);
+                    throw e;
+                }
+            }, executor);
+        }
+
+        // Wait for all the ranges, even after a failure, so that none of them still runs when this returns.
+        boolean integral = true;
+        CompletionException failure = null;
+        for (CompletableFuture<Boolean> future : futures) {
+            try {
+                integral &= future.join();
+            } catch (CompletionException e) {
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null) {
+            Throwables.throwIfUnchecked(failure.getCause());
+            throw failure;
+        }
+
+        return ValueStore.of(values, integral, threshold);
+    }
+
+    /**
+     * Apply the mapper to all the cells in the calling thread. The results are stored like
+     * {@link #map(Function, Executor, double)} does.
+     */
+    ValueStore map(Function<List<String>, Number> mapper, double threshold) {
+        checkNotNull(mapper);
+        double[] values = new double[resolver.size()];
+        boolean integral = map(mapper, values, 0, values.length, new AtomicBoolean(false));
+        return ValueStore.of(values, integral, threshold);
+    }
+
+    /**
+     * Map the cells from index (inclusive) to index (exclusive) and return true if all the results were integers.
+     * Null and {@link Double#NaN} results are missing. Stops early once failed is set.
+     */
+    private boolean map(Function<List<String>, Number> mapper, double[] values, int from, int to,
+                        AtomicBoolean failed) {
+        if (from == to)
+            return true;
+        int dimensions = resolver.getDimensionCount();
+        int[] ordinals = new int[dimensions];
+        String[] categories = new String[dimensions];
+        resolver.decode(from, ordinals);
+        for (int d = 0; d < dimensions; d++) {
+            categories[d] = indexes.get(d).get(ordinals[d]);
+        }
+
+        boolean integral = true;
+        for (int index = from; index < to && !failed.get(); index++) {
+            Number value = mapper.apply(ImmutableList.copyOf(categories));
+            if (value == null || Double.isNaN(value.doubleValue())) {
+                values[index] = Double.NaN;
+            } else {
+                values[index] = value.doubleValue();
+                integral &= ValueStore.Builder.isInteger(value);
+            }
+
+            // Move to the next cell, last dimension first.
+            for (int d = dimensions - 1; d >= 0; d--) {
+                if (++ordinals[d] < resolver.getSize(d)) {
+                    categories[d] = indexes.get(d).get(ordinals[d]);
+                    break;
+                }
+                ordinals[d] = 0;
+                categories[d] = indexes.get(d).get(0);
+            }
+        }
+        return integral;
+    }
+}
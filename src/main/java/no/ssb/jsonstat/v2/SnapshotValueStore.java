@@ -0,0 +1,100 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     SnapshotValueStore.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * A {@link ValueStore} that reads the values of a {@link DatasetSnapshot} directly from the mapped file.
+ * <p>
+ * Missing cells contain {@link Double#NaN} in the value block and have their bit set in the missing bitmap.
+ */
+final class SnapshotValueStore extends ValueStore {
+
+    private final DoubleBuffer values;
+    private final LongBuffer missing;
+    private final int count;
+    private final boolean integral;
+
+    SnapshotValueStore(DoubleBuffer values, LongBuffer missing, int count, boolean integral) {
+        this.values = values;
+        this.missing = missing;
+        this.count = count;
+        this.integral = integral;
+    }
+
+    @Override
+    public Storage getStorage() {
+        return Storage.MAPPED;
+    }
+
+    @Override
+    public int size() {
+        return values.limit();
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isMissing(int index) {
+        checkElementIndex(index, values.limit());
+        return (missing.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return values.get(index);
+    }
+
+    @Override
+    public void copyTo(int index, double[] target, int offset, int length) {
+        checkPositionIndexes(index, index + length, values.limit());
+        DoubleBuffer view = values.duplicate();
+        view.position(index);
+        view.get(target, offset, length);
+    }
+
+    @Override
+    public int nextIndex(int fromIndex) {
+        int size = values.limit();
+        if (fromIndex >= size)
+            return -1;
+        fromIndex = Math.max(fromIndex, 0);
+        int word = fromIndex >>> 6;
+        long present = ~missing.get(word) & (-1L << fromIndex);
+        while (present == 0) {
+            if (++word == missing.limit())
+                return -1;
+            present = ~missing.get(word);
+        }
+        int index = (word << 6) + Long.numberOfTrailingZeros(present);
+        return index < size ? index : -1;
+    }
+
+    @Override
+    public boolean isIntegral() {
+        return integral;
+    }
+}
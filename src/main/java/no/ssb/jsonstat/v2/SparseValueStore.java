@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     SparseValueStore.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import java.util.Arrays;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * A {@link ValueStore} that only keeps the non missing values.
+ * <p>
+ * The indices are kept sorted in an int array, lookups are binary searches.
+ */
+final class SparseValueStore extends ValueStore {
+
+    private final int size;
+    private final int[] offsets;
+    private final double[] values;
+    private final boolean integral;
+
+    SparseValueStore(int size, int[] offsets, double[] values, boolean integral) {
+        this.size = size;
+        this.offsets = offsets;
+        this.values = values;
+        this.integral = integral;
+    }
+
+    @Override
+    public Storage getStorage() {
+        return Storage.SPARSE;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int count() {
+        return offsets.length;
+    }
+
+    @Override
+    public boolean isMissing(int index) {
+        checkElementIndex(index, size);
+        return Arrays.binarySearch(offsets, index) < 0;
+    }
+
+    @Override
+    public double getDouble(int index) {
+        checkElementIndex(index, size);
+        int position = Arrays.binarySearch(offsets, index);
+        return position < 0 ? Double.NaN : values[position];
+    }
+
+    @Override
+    public void copyTo(int index, double[] target, int offset, int length) {
+        checkPositionIndexes(index, index + length, size);
+        checkPositionIndexes(offset, offset + length, target.length);
+        Arrays.fill(target, offset, offset + length, Double.NaN);
+        int end = index + length;
+        int position = Arrays.binarySearch(offsets, index);
+        if (position < 0)
+            position = -position - 1;
+        for (; position < offsets.length && offsets[position] < end; position++) {
+            target[offset + offsets[position] - index] = values[position];
+        }
+    }
+
+    @Override
+    public int nextIndex(int fromIndex) {
+        int position = Arrays.binarySearch(offsets, fromIndex);
+        if (position < 0)
+            position = -position - 1;
+        return position < offsets.length ? offsets[position] : -1;
+    }
+
+    @Override
+    public boolean isIntegral() {
+        return integral;
+    }
+}
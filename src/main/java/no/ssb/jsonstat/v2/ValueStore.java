@@ -0,0 +1,558 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     ValueStore.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Primitive storage for the values of a {@link Dataset}.
+ * <p>
+ * Values are addressed by their position in row-major order (see {@link DatasetValueBuilder#withValues(java.util.stream.Stream)})
+ * and kept as doubles. Missing values (null in JSON-stat) are tracked separately from the numbers themselves.
+ * {@link Double#NaN} always means missing: the builder stores a NaN value as a missing value, and missing
+ * values are read back as NaN.
+ * <p>
+ * The boxed accessors return {@link Integer}s when all the values of the store were given as integers, and
+ * {@link Double}s otherwise.
+ */
+public abstract class ValueStore {
+
+    /**
+     * Default density under which the values are kept in a sparse store.
+     * <p>
+     * A sparse store uses 12 bytes per non missing value where a dense store uses a bit over 8 bytes per cell.
+     */
+    public static final double DEFAULT_DENSITY_THRESHOLD = 0.5;
+
+    /**
+     * Create a new {@link Builder} for a store of the given size.
+     *
+     * @param size the number of cells in the dataset, missing values included
+     */
+    public static Builder builder(int size) {
+        checkArgument(size >= 0, "size was negative");
+        return new Builder(size);
+    }
+
+    /**
+     * Create a new {@link Builder} for a store of unknown size. The buffers grow as values are added.
+     */
+    public static Builder builder() {
+        return new Builder(-1);
+    }
+
+    /**
+     * Create a store that takes ownership of a filled array, {@link Double#NaN} values are missing.
+     */
+    static ValueStore of(double[] values, boolean integral, double threshold) {
+        BitSet missing = new BitSet(values.length);
+        for (int i = 0; i < values.length; i++) {
+            if (Double.isNaN(values[i]))
+                missing.set(i);
+        }
+        int count = values.length - missing.cardinality();
+        if (count >= threshold * values.length)
+            return new DenseValueStore(values, missing, integral);
+
+        int[] offsets = new int[count];
+        double[] sparseValues = new double[count];
+        int i = 0;
+        for (int index = missing.nextClearBit(0); index < values.length; index = missing.nextClearBit(index + 1)) {
+            offsets[i] = index;
+            sparseValues[i] = values[index];
+            i++;
+        }
+        return new SparseValueStore(values.length, offsets, sparseValues, integral);
+    }
+
+    /**
+     * Return the kind of storage used.
+     */
+    public abstract Storage getStorage();
+
+    /**
+     * Return the number of cells of the store, missing values included.
+     */
+    public abstract int size();
+
+    /**
+     * Return the number of non missing values.
+     */
+    public abstract int count();
+
+    /**
+     * Return true if the value at the given index is missing.
+     *
+     * @throws IndexOutOfBoundsException if index is negative or greater than or equal to {@link #size()}
+     */
+    public abstract boolean isMissing(int index);
+
+    /**
+     * Return the value at the given index, or {@link Double#NaN} if it is missing.
+     *
+     * @throws IndexOutOfBoundsException if index is negative or greater than or equal to {@link #size()}
+     */
+    public abstract double getDouble(int index);
+
+    /**
+     * Copy length values starting at index into the target array. Missing values are copied as
+     * {@link Double#NaN}.
+     *
+     * @throws IndexOutOfBoundsException if a range is outside the store or the target array
+     */
+    public void copyTo(int index, double[] target, int offset, int length) {
+        checkPositionIndexes(index, index + length, size());
+        checkPositionIndexes(offset, offset + length, target.length);
+        for (int i = 0; i < length; i++) {
+            target[offset + i] = getDouble(index + i);
+        }
+    }
+
+    /**
+     * Return the index of the first non missing value that occurs on or after the given index,
+     * or -1 if there is none.
+     */
+    public abstract int nextIndex(int fromIndex);
+
+    /**
+     * Return true if all the values of the store were given as integers.
+     */
+    public abstract boolean isIntegral();
+
+    /**
+     * Return the value at the given index, boxed, or null if it is missing.
+     *
+     * @throws IndexOutOfBoundsException if index is negative or greater than or equal to {@link #size()}
+     */
+    public Number get(int index) {
+        double value = getDouble(index);
+        if (Double.isNaN(value) && isMissing(index))
+            return null;
+        if (isIntegral())
+            return (int) value;
+        return value;
+    }
+
+    /**
+     * Return a {@link Map} view of the non missing values, keyed by index and sorted in row-major order.
+     */
+    public Map<Integer, Number> asMap() {
+        return new ValueMap();
+    }
+
+    /**
+     * The kinds of storage.
+     */
+    public enum Storage {
+        /**
+         * All the cells are allocated, missing or not.
+         */
+        DENSE,
+        /**
+         * Only the non missing values are allocated, alongside their index.
+         */
+        SPARSE,
+        /**
+         * The values are decoded on demand from a memory mapped file.
+         */
+        MAPPED
+    }
+
+    private class ValueMap extends AbstractMap<Integer, Number> {
+
+        @Override
+        public Number get(Object key) {
+            if (!(key instanceof Integer))
+                return null;
+            int index = (Integer) key;
+            if (index < 0 || index >= ValueStore.this.size())
+                return null;
+            return ValueStore.this.get(index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public Set<Entry<Integer, Number>> entrySet() {
+            return new AbstractSet<Entry<Integer, Number>>() {
+                @Override
+                public Iterator<Entry<Integer, Number>> iterator() {
+                    return new Iterator<Entry<Integer, Number>>() {
+
+                        int next = nextIndex(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return next != -1;
+                        }
+
+                        @Override
+                        public Entry<Integer, Number> next() {
+                            if (next == -1)
+                                throw new NoSuchElementException();
+                            int index = next;
+                            next = index + 1 < ValueStore.this.size() ? nextIndex(index + 1) : -1;
+                            return new SimpleImmutableEntry<>(index, ValueStore.this.get(index));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return count();
+                }
+            };
+        }
+    }
+
+    /**
+     * Accumulates values and chooses the storage according to their density.
+     * <p>
+     * Values are first kept in sparse form and moved to a dense array as soon as the number of values
+     * reaches the density threshold. This way, a sparse dataset never allocates its dense form.
+     * <p>
+     * A builder cannot be used anymore once the store has been built.
+     */
+    public static final class Builder {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        // Minimum number of cells to look at before estimating the density when the size is unknown.
+        private static final int MIN_SAMPLE = 1024;
+
+        private final int size;
+        private double threshold = DEFAULT_DENSITY_THRESHOLD;
+        private boolean integral = true;
+        private boolean built = false;
+
+        // Next index used by add(), and highest index written + 1.
+        private int position = 0;
+        private int extent = 0;
+
+        // Sparse form, in insertion order.
+        private int[] offsets = new int[0];
+        private double[] sparseValues = new double[0];
+        private int count = 0;
+        private boolean sorted = true;
+
+        // Dense form, null until the density threshold is reached.
+        private double[] values;
+        private BitSet present;
+
+        private Builder(int size) {
+            this.size = size;
+        }
+
+        /**
+         * Set the density (ratio of non missing values) under which the values are kept in a sparse store.
+         *
+         * @throws IllegalArgumentException if threshold is not between 0 and 1
+         */
+        public Builder withDensityThreshold(double threshold) {
+            checkArgument(threshold >= 0 && threshold <= 1, "threshold must be between 0 and 1");
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Append a value, null and {@link Double#NaN} values are considered missing.
+         *
+         * @throws IllegalArgumentException if the store is full
+         */
+        public Builder add(Number value) {
+            if (value == null || Double.isNaN(value.doubleValue()))
+                return addMissing();
+            if (!isInteger(value))
+                integral = false;
+            write(position, value.doubleValue());
+            position++;
+            return this;
+        }
+
+        /**
+         * Append an integer value.
+         *
+         * @throws IllegalArgumentException if the store is full
+         */
+        public Builder add(int value) {
+            write(position, value);
+            position++;
+            return this;
+        }
+
+        /**
+         * Append a decimal value, {@link Double#NaN} is considered missing.
+         *
+         * @throws IllegalArgumentException if the store is full
+         */
+        public Builder add(double value) {
+            if (Double.isNaN(value))
+                return addMissing();
+            integral = false;
+            write(position, value);
+            position++;
+            return this;
+        }
+
+        /**
+         * Append a missing value.
+         *
+         * @throws IllegalArgumentException if the store is full
+         */
+        public Builder addMissing() {
+            checkIndex(position);
+            position++;
+            extent = Math.max(extent, position);
+            return this;
+        }
+
+        /**
+         * Set the value at the given index. Indices can be set in any order, the last value set wins.
+         * <p>
+         * Cells that are never set are missing, and null and {@link Double#NaN} values are ignored. This method
+         * does not move the position used by the add methods.
+         *
+         * @throws IllegalArgumentException if the index is outside the store
+         */
+        public Builder set(int index, Number value) {
+            if (value == null || Double.isNaN(value.doubleValue())) {
+                checkIndex(index);
+                extent = Math.max(extent, index + 1);
+                return this;
+            }
+            if (!isInteger(value))
+                integral = false;
+            write(index, value.doubleValue());
+            return this;
+        }
+
+        /**
+         * Set the integer value at the given index. See {@link #set(int, Number)}.
+         *
+         * @throws IllegalArgumentException if the index is outside the store
+         */
+        public Builder set(int index, int value) {
+            write(index, value);
+            return this;
+        }
+
+        /**
+         * Set the decimal value at the given index. See {@link #set(int, Number)}.
+         *
+         * @throws IllegalArgumentException if the index is outside the store
+         */
+        public Builder set(int index, double value) {
+            if (Double.isNaN(value))
+                return set(index, (Number) null);
+            integral = false;
+            write(index, value);
+            return this;
+        }
+
+        /**
+         * Return the number of values appended so far, missing values included.
+         */
+        public int position() {
+            return position;
+        }
+
+        /**
+         * Build the store.
+         * <p>
+         * If the builder was not created with a size, the size of the store is the highest index written + 1.
+         */
+        public ValueStore build() {
+            return build(size >= 0 ? size : extent);
+        }
+
+        /**
+         * Build the store with the given size. Cells after the last written index are missing.
+         *
+         * @throws IllegalArgumentException if values were written at or after size
+         */
+        public ValueStore build(int size) {
+            checkState(!built, "the store was already built");
+            checkArgument(extent <= size,
+                    "too many values, found %s but the dataset only has %s cells", extent, size);
+            built = true;
+
+            if (values == null) {
+                if (!sorted)
+                    sort();
+                if (count < threshold * size)
+                    return new SparseValueStore(
+                            size,
+                            Arrays.copyOf(offsets, count),
+                            Arrays.copyOf(sparseValues, count),
+                            integral
+                    );
+                toDense(size);
+            }
+
+            int cardinality = present.cardinality();
+            if (cardinality < threshold * size)
+                return toSparse(size, cardinality);
+
+            double[] dense = values.length == size ? values : Arrays.copyOf(values, size);
+            BitSet missing = (BitSet) present.clone();
+            missing.flip(0, size);
+            return new DenseValueStore(dense, missing, integral);
+        }
+
+        /**
+         * Return an independent copy of this builder, used to build a store while values are still being added.
+         */
+        Builder copy() {
+            checkState(!built, "the store was already built");
+            Builder copy = new Builder(size);
+            copy.threshold = threshold;
+            copy.integral = integral;
+            copy.position = position;
+            copy.extent = extent;
+            copy.count = count;
+            copy.sorted = sorted;
+            copy.offsets = offsets == null ? null : offsets.clone();
+            copy.sparseValues = sparseValues == null ? null : sparseValues.clone();
+            copy.values = values == null ? null : values.clone();
+            copy.present = present == null ? null : (BitSet) present.clone();
+            return copy;
+        }
+
+        private ValueStore toSparse(int size, int count) {
+            int[] offsets = new int[count];
+            double[] sparseValues = new double[count];
+            int i = 0;
+            for (int index = present.nextSetBit(0); index >= 0; index = present.nextSetBit(index + 1)) {
+                offsets[i] = index;
+                sparseValues[i] = values[index];
+                i++;
+            }
+            return new SparseValueStore(size, offsets, sparseValues, integral);
+        }
+
+        private void write(int index, double value) {
+            checkIndex(index);
+            extent = Math.max(extent, index + 1);
+
+            if (values != null) {
+                ensureDenseCapacity(index + 1);
+                values[index] = value;
+                present.set(index);
+                return;
+            }
+
+            if (count > 0 && index <= offsets[count - 1])
+                sorted = false;
+            if (count == offsets.length) {
+                int capacity = Math.max(INITIAL_CAPACITY, grow(count));
+                offsets = Arrays.copyOf(offsets, capacity);
+                sparseValues = Arrays.copyOf(sparseValues, capacity);
+            }
+            offsets[count] = index;
+            sparseValues[count] = value;
+            count++;
+
+            int expected = size >= 0 ? size : extent;
+            if ((size >= 0 || extent >= MIN_SAMPLE) && count >= threshold * expected)
+                toDense(size >= 0 ? size : Math.max(INITIAL_CAPACITY, grow(extent)));
+        }
+
+        /**
+         * Move the sparse values to the dense array, in insertion order.
+         */
+        private void toDense(int capacity) {
+            values = new double[capacity];
+            present = new BitSet(capacity);
+            for (int i = 0; i < count; i++) {
+                values[offsets[i]] = sparseValues[i];
+                present.set(offsets[i]);
+            }
+            offsets = null;
+            sparseValues = null;
+        }
+
+        private void ensureDenseCapacity(int capacity) {
+            if (values.length < capacity)
+                values = Arrays.copyOf(values, Math.max(capacity, grow(values.length)));
+        }
+
+        /**
+         * Sort the sparse values by index, keeping the last value written for duplicated indices.
+         */
+        private void sort() {
+            // Pack index and insertion order in longs so the sort does not box.
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++)
+                keys[i] = ((long) offsets[i] << 32) | i;
+            Arrays.sort(keys);
+
+            int[] sortedOffsets = new int[count];
+            double[] sortedValues = new double[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                int index = (int) (keys[i] >>> 32);
+                double value = sparseValues[(int) keys[i]];
+                if (n > 0 && sortedOffsets[n - 1] == index) {
+                    sortedValues[n - 1] = value;
+                } else {
+                    sortedOffsets[n] = index;
+                    sortedValues[n] = value;
+                    n++;
+                }
+            }
+            offsets = sortedOffsets;
+            sparseValues = sortedValues;
+            count = n;
+            sorted = true;
+        }
+
+        private void checkIndex(int index) {
+            checkState(!built, "the store was already built");
+            checkArgument(index >= 0, "index was negative");
+            checkArgument(size < 0 || index < size,
+                    "too many values, the dataset only has %s cells", size);
+        }
+
+        private static int grow(int capacity) {
+            int grown = capacity + (capacity >> 1);
+            return grown < 0 ? Integer.MAX_VALUE - 8 : grown;
+        }
+
+        static boolean isInteger(Number value) {
+            if (value instanceof Integer || value instanceof Short || value instanceof Byte)
+                return true;
+            if (value instanceof Long)
+                return value.longValue() == value.intValue();
+            return false;
+        }
+    }
+}
@@ -17,6 +17,7 @@
  */
 package no.ssb.jsonstat.v2.deser;
 
+import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -25,13 +26,16 @@ import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import no.ssb.jsonstat.v2.Dataset;
 import no.ssb.jsonstat.v2.DatasetBuildable;
 import no.ssb.jsonstat.v2.DatasetBuilder;
+import no.ssb.jsonstat.v2.DatasetValueBuilder;
 import no.ssb.jsonstat.v2.Dimension;
+import no.ssb.jsonstat.v2.ValueStore;
 
 import java.io.IOException;
 import java.time.Instant;
@@ -39,6 +43,7 @@ import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
 import java.time.temporal.ChronoField;
 import java.util.*;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -51,8 +56,6 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class DatasetDeserializer extends StdDeserializer<DatasetBuildable> {
 
-    static final TypeReference<List<Number>> VALUES_LIST = new TypeReference<List<Number>>() {
-    };
     static final TypeReference<Map<String, Dimension.Builder>> DIMENSION_MAP = new TypeReference<Map<String, Dimension.Builder>>() {
     };
     static final TypeReference<ImmutableSet<String>> ID_SET = new TypeReference<ImmutableSet<String>>() {
@@ -61,8 +64,6 @@ public class DatasetDeserializer extends StdDeserializer<DatasetBuildable> {
     };
     static final TypeReference<ArrayListMultimap<String, String>> ROLE_MULTIMAP = new TypeReference<ArrayListMultimap<String, String>>() {
     };
-    static final TypeReference<?> VALUES_MAP = new TypeReference<TreeMap<Integer, Number>>() {
-    };
 
     static final DateTimeFormatter ECMA_FORMATTER = new DateTimeFormatterBuilder()
             .appendPattern("uuuu").optionalStart().appendPattern("-MM").optionalStart().appendPattern("-dd")
@@ -103,11 +104,8 @@ public class DatasetDeserializer extends StdDeserializer<DatasetBuildable> {
             p.nextToken();
         }
 
-        Set<String> ids = Collections.emptySet();
-        List<Integer> sizes = Collections.emptyList();
-        Multimap<String, String> roles = ArrayListMultimap.create();
-        Map<String, Dimension.Builder> dims = Collections.emptyMap();
-        List<Number> values = Collections.emptyList();
+        Dimensions dimensions = new Dimensions();
+        Function<DatasetValueBuilder, DatasetBuildable> values = b -> b.withValues(ValueStore.builder());
 
 
         DatasetBuilder builder = Dataset.create();
@@ -130,42 +128,16 @@ public class DatasetDeserializer extends StdDeserializer<DatasetBuildable> {
                     builder.updatedAt(updated);
                     break;
                 case "value":
-                    values = parseValues(p, ctxt);
+                    // Pre-size the values when the size came first, grow otherwise.
+                    values = readValues(p, ctxt, cellCount(dimensions.sizes));
                     break;
                 case "dimension":
-                    if (!version.orElse("1.x").equals("2.0")) {
-                        dims = Maps.newHashMap();
-                        // Deal with the id, size and role inside dimension.
-                        while (p.nextValue() != JsonToken.END_OBJECT) {
-                            switch (p.getCurrentName()) {
-                                case "id":
-                                    ids = p.readValueAs(ID_SET);
-                                    break;
-                                case "size":
-                                    sizes = p.readValueAs(SIZE_LIST);
-                                    break;
-                                case "role":
-                                    roles = p.readValueAs(ROLE_MULTIMAP);
-                                    break;
-                                default:
-                                    dims.put(
-                                            p.getCurrentName(),
-                                            ctxt.readValue(p, Dimension.Builder.class)
-                                    );
-                            }
-                        }
-                    } else {
-                        dims = p.readValueAs(DIMENSION_MAP);
-                    }
+                    dimensions.parseDimension(p, version.orElse("1.x"));
                     break;
                 case "id":
-                    ids = p.readValueAs(ID_SET);
-                    break;
                 case "size":
-                    sizes = p.readValueAs(SIZE_LIST);
-                    break;
                 case "role":
-                    roles = p.readValueAs(ROLE_MULTIMAP);
+                    dimensions.parseProperty(p);
                     break;
                 case "extension":
                     extension = Optional.of(ctxt.readValue(
@@ -196,7 +168,10 @@ public class DatasetDeserializer extends StdDeserializer<DatasetBuildable> {
 
 
         // Setup roles
-        for (Map.Entry<String, String> dimRole : roles.entries()) {
+        Set<String> ids = dimensions.ids;
+        List<Integer> sizes = dimensions.sizes;
+        Map<String, Dimension.Builder> dims = dimensions.builders;
+        for (Map.Entry<String, String> dimRole : dimensions.roles.entries()) {
             Dimension.Roles role = Dimension.Roles.valueOf(
                     dimRole.getKey().toUpperCase()
             );
@@ -214,47 +189,209 @@ public class DatasetDeserializer extends StdDeserializer<DatasetBuildable> {
             orderedDimensions.add(dims.get(dimensionName));
         }
 
-        // TODO: Check size?
-
         // Check ids and add to the data set.
         checkArgument(ids.size() == dims.size(),
                 "dimension and size did not match"
         );
 
+        // Check the sizes against the dimensions. The number of values is checked by the builder.
+        if (!sizes.isEmpty()) {
+            checkArgument(sizes.size() == ids.size(),
+                    "size and id did not match, %s sizes for %s ids", sizes.size(), ids.size()
+            );
+            for (int i = 0; i < orderedDimensions.size(); i++) {
+                int categories = orderedDimensions.get(i).getIndex().size();
+                checkArgument(sizes.get(i) == categories,
+                        "size of dimension %s was %s but it has %s categories",
+                        Iterables.get(ids, i), sizes.get(i), categories
+                );
+            }
+        }
+
         if (extension.isPresent()) {
             builder.withExtension(extension.get());
         }
 
-        return builder.withDimensions(orderedDimensions).withValues(values);
+        return values.apply(builder.withDimensions(orderedDimensions));
+    }
+
+    /**
+     * Read the value property. The parser is on the first token of the values and must be left on the last one.
+     * <p>
+     * The returned function populates the data set once the dimensions are known. The default implementation
+     * parses the values with {@link #parseValues(JsonParser, DeserializationContext, int)}.
+     *
+     * @param size the number of cells in the dataset, or -1 if not known yet
+     */
+    protected Function<DatasetValueBuilder, DatasetBuildable> readValues(
+            JsonParser p, DeserializationContext ctxt, int size) throws IOException {
+        ValueStore.Builder values = parseValues(p, ctxt, size);
+        return builder -> builder.withValues(values);
     }
 
-    List<Number> parseValues(JsonParser p, DeserializationContext ctxt) throws IOException {
-        List<Number> result = Collections.emptyList();
+    /**
+     * Parse the value property.
+     * <p>
+     * Number tokens are read directly into the {@link ValueStore.Builder}, without going through
+     * boxed numbers or an intermediate list.
+     *
+     * @param size the number of cells in the dataset, or -1 if not known yet
+     */
+    ValueStore.Builder parseValues(JsonParser p, DeserializationContext ctxt, int size) throws IOException {
+        ValueStore.Builder result = size >= 0 ? ValueStore.builder(size) : ValueStore.builder();
+        if (p.getCurrentToken() == JsonToken.START_OBJECT || p.getCurrentToken() == JsonToken.START_ARRAY) {
+            parseValues(p, result);
+        } else {
+            ctxt.handleUnexpectedToken(
+                    this._valueClass, p.getCurrentToken(), p, "msg"
+            );
+        }
+        return result;
+    }
+
+    /**
+     * Parse the value property, in array or object form, into result.
+     *
+     * @return the number of values in array form, the highest index + 1 in object form
+     */
+    static int parseValues(JsonParser p, ValueStore.Builder result) throws IOException {
+        int extent = 0;
         switch (p.getCurrentToken()) {
             case START_OBJECT:
-                SortedMap<Integer, Number> map = p.readValueAs(VALUES_MAP);
-                result = new AbstractList<Number>() {
-
-                    @Override
-                    public int size() {
-                        return map.lastKey() + 1;
-                    }
-
-                    @Override
-                    public Number get(int index) {
-                        return map.get(index);
-                    }
-                };
-                break;
+                // Only the non missing values are listed, keyed by index.
+                while (p.nextValue() != JsonToken.END_OBJECT) {
+                    int index = Integer.parseInt(p.getCurrentName());
+                    parseValue(p, result, index);
+                    extent = Math.max(extent, index + 1);
+                }
+                return extent;
             case START_ARRAY:
-                result = p.readValueAs(VALUES_LIST);
+                while (p.nextToken() != JsonToken.END_ARRAY) {
+                    parseValue(p, result, extent++);
+                }
+                return extent;
+            default:
+                throw new JsonParseException(p, "expected the values but found " + p.getCurrentToken());
+        }
+    }
+
+    /**
+     * Return the product of the sizes, or -1 if there are none.
+     */
+    static int cellCount(List<Integer> sizes) {
+        if (sizes.isEmpty())
+            return -1;
+        long count = 1;
+        for (Integer size : sizes) {
+            count *= size;
+            checkArgument(count <= Integer.MAX_VALUE, "too many cells, the sizes were %s", sizes);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Parse the current value into result.
+     */
+    static void parseValue(JsonParser p, ValueStore.Builder result, int index) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+                if (p.getNumberType() == JsonParser.NumberType.INT)
+                    result.set(index, p.getIntValue());
+                else
+                    result.set(index, p.getDoubleValue());
+                break;
+            case VALUE_NUMBER_FLOAT:
+                result.set(index, p.getDoubleValue());
+                break;
+            case VALUE_NULL:
+                result.set(index, (Number) null);
+                break;
+            case VALUE_STRING:
+                // Lenient, let jackson coerce the text.
+                result.set(index, p.readValueAs(Number.class));
                 break;
             default:
-                ctxt.handleUnexpectedToken(
-                        this._valueClass, p.getCurrentToken(), p, "msg"
-                );
+                throw unexpectedValue(p);
+        }
+    }
+
+    /**
+     * Parse the current value as a double, {@link Double#NaN} if it is null.
+     */
+    static double parseDouble(JsonParser p) throws IOException {
+        switch (p.getCurrentToken()) {
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getDoubleValue();
+            case VALUE_NULL:
+                return Double.NaN;
+            case VALUE_STRING:
+                // Lenient, let jackson coerce the text.
+                Number number = p.readValueAs(Number.class);
+                return number == null ? Double.NaN : number.doubleValue();
+            default:
+                throw unexpectedValue(p);
+        }
+    }
+
+    private static JsonParseException unexpectedValue(JsonParser p) {
+        return new JsonParseException(p, "expected a number or null but found " + p.getCurrentToken());
+    }
+
+    /**
+     * The dimension related properties of a dataset. Version 1.x puts the id, size and role inside the
+     * dimension property, version 2.0 puts them next to it.
+     */
+    static final class Dimensions {
+
+        Set<String> ids = Collections.emptySet();
+        List<Integer> sizes = Collections.emptyList();
+        Multimap<String, String> roles = ArrayListMultimap.create();
+        Map<String, Dimension.Builder> builders = Collections.emptyMap();
+
+        /**
+         * Return true if all the dimensions listed in id were read.
+         */
+        boolean isComplete() {
+            return !ids.isEmpty() && builders.size() == ids.size();
+        }
+
+        /**
+         * Parse the dimension property, the parser must be on its start.
+         */
+        void parseDimension(JsonParser p, String version) throws IOException {
+            if (version.equals("2.0")) {
+                builders = p.readValueAs(DIMENSION_MAP);
+                return;
+            }
+            builders = Maps.newHashMap();
+            // Deal with the id, size and role inside dimension.
+            while (p.nextValue() != JsonToken.END_OBJECT) {
+                if (!parseProperty(p))
+                    builders.put(p.getCurrentName(), p.readValueAs(Dimension.Builder.class));
+            }
+        }
+
+        /**
+         * Parse the current property if it is id, size or role.
+         *
+         * @return false if the property was not one of them
+         */
+        boolean parseProperty(JsonParser p) throws IOException {
+            switch (p.getCurrentName()) {
+                case "id":
+                    ids = p.readValueAs(ID_SET);
+                    return true;
+                case "size":
+                    sizes = p.readValueAs(SIZE_LIST);
+                    return true;
+                case "role":
+                    roles = p.readValueAs(ROLE_MULTIMAP);
+                    return true;
+                default:
+                    return false;
+            }
         }
-        return result;
     }
 
 }
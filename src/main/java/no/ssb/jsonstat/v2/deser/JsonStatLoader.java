@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     JsonStatLoader.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+
+import java.io.CharConversionException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Loads large JSON-stat datasets from files without reading the values in memory.
+ * <p>
+ * The file is memory mapped and parsed once. The dimensions and the metadata are deserialized, but for the
+ * values only the byte offset of every nth value is recorded (see {@link #withIndexInterval(int)}). Values are
+ * then decoded from the file when they are accessed.
+ * <p>
+ * Values in object form are sparse by definition and are read in memory as usual.
+ * <p>
+ * The offsets are byte offsets, so the file must be encoded in UTF-8, with or without a byte order mark.
+ */
+public class JsonStatLoader {
+
+    public static final int DEFAULT_INDEX_INTERVAL = 128;
+
+    private final ObjectReader reader;
+    private final int indexInterval;
+
+    /**
+     * Create a new loader.
+     *
+     * @param mapper a mapper configured for JSON-stat, see {@link JsonStatModule}. It is copied.
+     */
+    public JsonStatLoader(ObjectMapper mapper) {
+        this(checkNotNull(mapper).copy()
+                .registerModule(new SimpleModule()
+                        .addDeserializer(DatasetBuildable.class, new MappedDatasetDeserializer()))
+                .readerFor(DatasetBuildable.class), DEFAULT_INDEX_INTERVAL);
+    }
+
+    private JsonStatLoader(ObjectReader reader, int indexInterval) {
+        this.reader = reader;
+        this.indexInterval = indexInterval;
+    }
+
+    /**
+     * Return a loader that records the offset of every interval values.
+     * <p>
+     * A larger interval uses less memory (8 bytes per interval cells) but a random access reads up to interval
+     * values.
+     *
+     * @throws IllegalArgumentException if interval is not positive
+     */
+    public JsonStatLoader withIndexInterval(int interval) {
+        checkArgument(interval > 0, "interval must be positive");
+        return new JsonStatLoader(reader, interval);
+    }
+
+    /**
+     * Load the dataset contained in the file.
+     * <p>
+     * The file must not be modified while the dataset is in use.
+     *
+     * @throws CharConversionException if the file is not encoded in UTF-8
+     */
+    public Dataset load(Path path) throws IOException {
+        MappedBytes bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytes = MappedBytes.map(channel);
+        }
+        long start = contentOffset(bytes);
+        try (InputStream stream = bytes.openStream(start)) {
+            DatasetBuildable dataset = reader
+                    .withAttribute(MappedBytes.class, bytes)
+                    .withAttribute(MappedDatasetDeserializer.INDEX_INTERVAL, indexInterval)
+                    .withAttribute(MappedDatasetDeserializer.START_OFFSET, start)
+                    .readValue(stream);
+            return dataset.build();
+        }
+    }
+
+    /**
+     * Return the offset of the content, after the UTF-8 byte order mark if there is one. Jackson skips the
+     * mark itself and would report offsets relative to the end of it.
+     * <p>
+     * Other encodings are detected like in RFC 4627: a UTF-16 or UTF-32 byte order mark, or a zero byte in
+     * the first two bytes since the first two characters of a JSON text are ASCII.
+     */
+    static long contentOffset(MappedBytes bytes) throws CharConversionException {
+        int first = bytes.get(0);
+        int second = bytes.get(1);
+        if (first == 0xEF && second == 0xBB && bytes.get(2) == 0xBF)
+            return 3;
+        if (first == 0xFE || first == 0xFF || first == 0 || second == 0)
+            throw new CharConversionException("only UTF-8 files can be mapped");
+        return 0;
+    }
+}
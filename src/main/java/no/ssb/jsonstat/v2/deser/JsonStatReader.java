@@ -0,0 +1,271 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     JsonStatReader.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import no.ssb.jsonstat.v2.CoordinateResolver;
+import no.ssb.jsonstat.v2.Dimension;
+import no.ssb.jsonstat.v2.ValueStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Pull based reader for the cells of a JSON-stat dataset.
+ * <p>
+ * The reader is a cursor: each call to {@link #next()} moves it to the next cell, whose index, category
+ * ordinals and value are then available. The ordinals array is reused between cells.
+ * <pre>
+ *   try (JsonStatReader reader = JsonStatReader.open(mapper, input)) {
+ *       while (reader.next()) {
+ *           int[] ordinals = reader.getOrdinals();
+ *           double value = reader.getValue();
+ *       }
+ *   }
+ * </pre>
+ * When the dimensions precede the values the cells are read from the parser as the cursor moves, and
+ * nothing but the dimensions are kept in memory. Otherwise, the values are buffered in a {@link ValueStore}
+ * until the dimensions are read.
+ * <p>
+ * All the cells are returned when the values are in array form, missing ones included. In object form, only
+ * the non missing cells are returned.
+ * <p>
+ * The mapper must be able to deserialize dimensions, see {@link no.ssb.jsonstat.JsonStatModule}.
+ */
+public class JsonStatReader implements Closeable {
+
+    private final JsonParser p;
+
+    private final DatasetDeserializer.Dimensions structure = new DatasetDeserializer.Dimensions();
+    private ImmutableMap<String, Dimension> dimensions;
+    private CoordinateResolver resolver;
+
+    // True if the values are in object form.
+    private boolean sparse;
+    // Buffered values, when they came before the dimensions.
+    private ValueStore buffered;
+
+    private final int[] ordinals;
+    private int index = -1;
+    private double value;
+    private boolean done = false;
+
+    /**
+     * Create a reader over the parser, positioned before or on the start of the dataset object. The
+     * metadata is read until the values are found.
+     */
+    public JsonStatReader(JsonParser p) throws IOException {
+        this.p = checkNotNull(p);
+        if (p.getCurrentToken() == null)
+            p.nextToken();
+        if (p.getCurrentToken() != JsonToken.START_OBJECT)
+            throw new JsonParseException(p, "expected a dataset object");
+
+        ValueStore.Builder values = ValueStore.builder();
+        int count = -1;
+        String version = "1.x";
+        while (p.nextValue() != JsonToken.END_OBJECT) {
+            switch (p.getCurrentName()) {
+                case "version":
+                    version = p.getText();
+                    break;
+                case "dimension":
+                    structure.parseDimension(p, version);
+                    break;
+                case "value":
+                    sparse = p.getCurrentToken() == JsonToken.START_OBJECT;
+                    if (structure.isComplete()) {
+                        resolve();
+                        ordinals = new int[resolver.getDimensionCount()];
+                        return;
+                    }
+                    count = DatasetDeserializer.parseValues(p, values);
+                    break;
+                default:
+                    if (!structure.parseProperty(p))
+                        p.skipChildren();
+            }
+        }
+
+        checkState(structure.isComplete(), "the dataset did not contain dimensions");
+        resolve();
+        // Same checks as the streaming path.
+        if (sparse && count > resolver.size())
+            throw new JsonParseException(p, String.format("index %s outside of the dataset", count - 1));
+        if (!sparse && count != -1 && count != resolver.size())
+            throw new JsonParseException(p, String.format(
+                    "expected %s values but found %s", resolver.size(), count));
+        buffered = values.build(resolver.size());
+        ordinals = new int[resolver.getDimensionCount()];
+    }
+
+    /**
+     * Create a reader over the input stream.
+     */
+    public static JsonStatReader open(ObjectMapper mapper, InputStream input) throws IOException {
+        return new JsonStatReader(mapper.getFactory().createParser(input));
+    }
+
+    /**
+     * Return the dimensions of the dataset, in order.
+     */
+    public ImmutableMap<String, Dimension> getDimension() {
+        return dimensions;
+    }
+
+    /**
+     * Return the {@link CoordinateResolver} of the dataset.
+     */
+    public CoordinateResolver getCoordinateResolver() {
+        return resolver;
+    }
+
+    /**
+     * Move to the next cell.
+     *
+     * @return false if there are no more cells
+     */
+    public boolean next() throws IOException {
+        if (done)
+            return false;
+        if (buffered != null)
+            return nextBuffered();
+
+        if (sparse)
+            return nextSparse();
+
+        if (p.nextToken() == JsonToken.END_ARRAY) {
+            if (index + 1 != resolver.size())
+                throw new JsonParseException(p, String.format(
+                        "expected %s values but found %s", resolver.size(), index + 1));
+            finish();
+            return false;
+        }
+        if (++index >= resolver.size())
+            throw new JsonParseException(p, String.format(
+                    "too many values, the dataset only has %s cells", resolver.size()));
+        if (index > 0)
+            increment();
+        value = DatasetDeserializer.parseDouble(p);
+        return true;
+    }
+
+    private boolean nextSparse() throws IOException {
+        while (p.nextValue() != JsonToken.END_OBJECT) {
+            double number = DatasetDeserializer.parseDouble(p);
+            if (Double.isNaN(number))
+                continue;
+            index = Integer.parseInt(p.getCurrentName());
+            if (index < 0 || index >= resolver.size())
+                throw new JsonParseException(p, String.format("index %s outside of the dataset", index));
+            resolver.decode(index, ordinals);
+            value = number;
+            return true;
+        }
+        finish();
+        return false;
+    }
+
+    /**
+     * Return the index of the current cell in row-major order.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Return the category ordinals of the current cell, one per dimension.
+     * <p>
+     * The array is reused by the reader and must not be modified.
+     */
+    public int[] getOrdinals() {
+        return ordinals;
+    }
+
+    /**
+     * Return the value of the current cell, or {@link Double#NaN} if it is missing.
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Return true if the value of the current cell is missing.
+     */
+    public boolean isMissing() {
+        return Double.isNaN(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        p.close();
+    }
+
+    private boolean nextBuffered() {
+        int next = sparse ? buffered.nextIndex(index + 1) : index + 1;
+        if (next < 0 || next >= buffered.size()) {
+            done = true;
+            return false;
+        }
+        if (index >= 0 && next == index + 1)
+            increment();
+        else
+            resolver.decode(next, ordinals);
+        index = next;
+        value = buffered.getDouble(index);
+        return true;
+    }
+
+    /**
+     * Move the ordinals to the next cell in row-major order.
+     */
+    private void increment() {
+        for (int dimension = ordinals.length - 1; dimension >= 0; dimension--) {
+            if (++ordinals[dimension] < resolver.getSize(dimension))
+                return;
+            ordinals[dimension] = 0;
+        }
+    }
+
+    /**
+     * Skip the rest of the document.
+     */
+    private void finish() throws IOException {
+        done = true;
+        while (p.nextValue() != JsonToken.END_OBJECT)
+            p.skipChildren();
+    }
+
+    private void resolve() {
+        ImmutableMap.Builder<String, Dimension> dimensions = ImmutableMap.builder();
+        for (String id : structure.ids) {
+            Dimension.Builder builder = checkNotNull(structure.builders.get(id), "the dimension %s did not exist", id);
+            dimensions.put(id, builder.build());
+        }
+        this.dimensions = dimensions.build();
+        this.resolver = CoordinateResolver.of(this.dimensions);
+    }
+}
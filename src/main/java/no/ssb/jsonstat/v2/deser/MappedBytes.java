@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     MappedBytes.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Read only view of a memory mapped file.
+ * <p>
+ * The file is mapped in segments of 1GB so that files over 2GB can be addressed with long positions.
+ */
+final class MappedBytes {
+
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    private MappedBytes(MappedByteBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Map the whole content of the channel. The mapping stays valid after the channel is closed.
+     */
+    static MappedBytes map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int count = (int) ((size + SEGMENT_MASK) >>> SEGMENT_BITS);
+        MappedByteBuffer[] segments = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++) {
+            long position = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(
+                    FileChannel.MapMode.READ_ONLY, position, Math.min(size - position, SEGMENT_MASK + 1)
+            );
+        }
+        return new MappedBytes(segments, size);
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Return the byte at the given position, or -1 after the end of the file.
+     */
+    int get(long position) {
+        if (position >= size)
+            return -1;
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & SEGMENT_MASK)) & 0xFF;
+    }
+
+    /**
+     * Return a stream over the bytes, starting at the given position.
+     */
+    InputStream openStream(long position) {
+        checkArgument(position >= 0 && position <= size, "position %s outside of the file", position);
+        return new InputStream() {
+
+            private long next = position;
+
+            @Override
+            public int read() {
+                int value = get(next);
+                if (value >= 0)
+                    next++;
+                return value;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (len == 0)
+                    return 0;
+                if (next >= size)
+                    return -1;
+                int segment = (int) (next >>> SEGMENT_BITS);
+                int offset = (int) (next & SEGMENT_MASK);
+                int length = Math.min(len, segments[segment].limit() - offset);
+                // Absolute bulk reads are not available on java 8, read from a duplicate.
+                ByteBuffer view = segments[segment].duplicate();
+                view.position(offset);
+                view.get(b, off, length);
+                next += length;
+                return length;
+            }
+
+            @Override
+            public long skip(long n) {
+                long skipped = Math.max(0, Math.min(n, size - next));
+                next += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, size - next);
+            }
+        };
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     MappedDatasetDeserializer.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.DatasetValueBuilder;
+import no.ssb.jsonstat.v2.ValueStore;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * Dataset deserializer that indexes the value array instead of reading it.
+ * <p>
+ * The mapped file and the index interval are passed as attributes of the
+ * {@link DeserializationContext}, see {@link JsonStatLoader}. Without them, or if the values are in object
+ * form, the values are read as usual.
+ */
+class MappedDatasetDeserializer extends DatasetDeserializer {
+
+    static final Object INDEX_INTERVAL = "indexInterval";
+    // Position in the file of the start of the stream being parsed.
+    static final Object START_OFFSET = "startOffset";
+
+    @Override
+    protected Function<DatasetValueBuilder, DatasetBuildable> readValues(
+            JsonParser p, DeserializationContext ctxt, int size) throws IOException {
+
+        MappedBytes bytes = (MappedBytes) ctxt.getAttribute(MappedBytes.class);
+        if (bytes == null || p.getCurrentToken() != JsonToken.START_ARRAY)
+            return super.readValues(p, ctxt, size);
+
+        int interval = (Integer) ctxt.getAttribute(INDEX_INTERVAL);
+        long start = (Long) ctxt.getAttribute(START_OFFSET);
+        long[] checkpoints = new long[size >= 0 ? size / interval + 1 : 16];
+        int cells = 0;
+        int count = 0;
+        boolean integral = true;
+
+        JsonToken token;
+        while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+            switch (token) {
+                case VALUE_NUMBER_INT:
+                    // Only look at the number type when it could overflow an int.
+                    if (integral && p.getTextLength() > 9)
+                        integral = p.getNumberType() == JsonParser.NumberType.INT;
+                    count++;
+                    break;
+                case VALUE_NUMBER_FLOAT:
+                    integral = false;
+                    count++;
+                    break;
+                case VALUE_NULL:
+                    break;
+                default:
+                    throw ctxt.wrongTokenException(p, Number.class, JsonToken.VALUE_NUMBER_FLOAT,
+                            "mapped values must be numbers or null");
+            }
+            if (cells % interval == 0) {
+                int checkpoint = cells / interval;
+                if (checkpoint == checkpoints.length)
+                    checkpoints = Arrays.copyOf(checkpoints, checkpoint + (checkpoint >> 1) + 1);
+                checkpoints[checkpoint] = start + p.getTokenLocation().getByteOffset();
+            }
+            cells++;
+        }
+
+        ValueStore store = new MappedValueStore(
+                bytes, checkpoints, interval, cells, count, integral
+        );
+        return builder -> builder.withValues(store);
+    }
+}
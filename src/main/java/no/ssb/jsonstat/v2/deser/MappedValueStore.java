@@ -0,0 +1,204 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     MappedValueStore.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import no.ssb.jsonstat.v2.ValueStore;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+/**
+ * A {@link ValueStore} that decodes the values of a JSON array from a memory mapped file.
+ * <p>
+ * The byte offset of every nth value is kept in a sparse index. Accessing a value seeks to the closest offset
+ * before it and skips the values in between, so a lookup reads at most n values.
+ * <p>
+ * The position of the last value accessed is kept as well. Accessing a value after it, in the same interval
+ * or the next ones, moves forward from there: reading the values in order reads each of them once.
+ */
+final class MappedValueStore extends ValueStore {
+
+    private final MappedBytes bytes;
+    private final long[] checkpoints;
+    private final int interval;
+    private final int size;
+    private final int count;
+    private final boolean integral;
+
+    // Last value accessed, replaced as a whole so that concurrent readers see a consistent pair.
+    private volatile Cursor cursor = new Cursor(0, 0);
+
+    /**
+     * @param checkpoints the byte offset of the values at index 0, interval, 2 * interval...
+     */
+    MappedValueStore(MappedBytes bytes, long[] checkpoints, int interval, int size, int count, boolean integral) {
+        this.bytes = bytes;
+        this.checkpoints = checkpoints;
+        this.interval = interval;
+        this.size = size;
+        this.count = count;
+        this.integral = integral;
+        if (checkpoints.length > 0)
+            this.cursor = new Cursor(0, checkpoints[0]);
+    }
+
+    @Override
+    public Storage getStorage() {
+        return Storage.MAPPED;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public boolean isMissing(int index) {
+        checkElementIndex(index, size);
+        return bytes.get(seek(index)) == 'n';
+    }
+
+    @Override
+    public double getDouble(int index) {
+        checkElementIndex(index, size);
+        return decode(seek(index));
+    }
+
+    @Override
+    public void copyTo(int index, double[] target, int offset, int length) {
+        checkPositionIndexes(index, index + length, size);
+        checkPositionIndexes(offset, offset + length, target.length);
+        if (length == 0)
+            return;
+        long position = seek(index);
+        target[offset] = decode(position);
+        for (int i = 1; i < length; i++) {
+            position = next(position);
+            target[offset + i] = decode(position);
+        }
+        cursor = new Cursor(index + length - 1, position);
+    }
+
+    @Override
+    public int nextIndex(int fromIndex) {
+        if (fromIndex >= size || count == 0)
+            return -1;
+        fromIndex = Math.max(fromIndex, 0);
+        if (count == size)
+            return fromIndex;
+        long position = seek(fromIndex);
+        for (int index = fromIndex; index < size; index++) {
+            if (bytes.get(position) != 'n') {
+                cursor = new Cursor(index, position);
+                return index;
+            }
+            position = next(position);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean isIntegral() {
+        return integral;
+    }
+
+    /**
+     * Return the byte offset of the value at index, starting from the last value accessed if it is between
+     * the closest checkpoint and index.
+     */
+    private long seek(int index) {
+        Cursor last = cursor;
+        int from = index - index % interval;
+        long position;
+        if (last.index <= index && last.index >= from) {
+            from = last.index;
+            position = last.position;
+        } else {
+            position = checkpoints[index / interval];
+        }
+        if (from == index)
+            return position;
+        for (; from < index; from++) {
+            position = next(position);
+        }
+        cursor = new Cursor(index, position);
+        return position;
+    }
+
+    /**
+     * Return the byte offset of the value following the one at position.
+     */
+    private long next(long position) {
+        while (!isDelimiter(bytes.get(position)))
+            position++;
+        position = skipWhitespace(position);
+        if (bytes.get(position) == ',')
+            position++;
+        return skipWhitespace(position);
+    }
+
+    private long skipWhitespace(long position) {
+        int b = bytes.get(position);
+        while (b == ' ' || b == '\n' || b == '\r' || b == '\t')
+            b = bytes.get(++position);
+        return position;
+    }
+
+    private double decode(long position) {
+        int b = bytes.get(position);
+        if (b == 'n')
+            return Double.NaN;
+
+        // Fast path for integers that fit in a long.
+        boolean negative = b == '-';
+        long cursor = negative ? position + 1 : position;
+        long value = 0;
+        int digits = 0;
+        for (b = bytes.get(cursor); b >= '0' && b <= '9' && digits < 18; b = bytes.get(++cursor)) {
+            value = value * 10 + (b - '0');
+            digits++;
+        }
+        if (digits > 0 && isDelimiter(b))
+            return negative ? -value : value;
+
+        // Decimals, exponents and larger numbers.
+        StringBuilder text = new StringBuilder();
+        for (cursor = position; !isDelimiter(b = bytes.get(cursor)); cursor++)
+            text.append((char) b);
+        return Double.parseDouble(text.toString());
+    }
+
+    private static boolean isDelimiter(int b) {
+        return b == ',' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t' || b < 0;
+    }
+
+    private static final class Cursor {
+        private final int index;
+        private final long position;
+
+        private Cursor(int index, long position) {
+            this.index = index;
+            this.position = position;
+        }
+    }
+}
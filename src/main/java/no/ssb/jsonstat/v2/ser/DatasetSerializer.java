@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetSerializer.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.ser;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.google.common.collect.ImmutableMultimap;
+import no.ssb.jsonstat.v2.CoordinateResolver;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.Dimension;
+import no.ssb.jsonstat.v2.ValueStore;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Serializer for Dataset.
+ * <p>
+ * Writes the dataset directly to the generator. The values are written as an array, or as an object keyed by
+ * index when most of them are missing and the object form is shorter.
+ */
+public class DatasetSerializer extends StdSerializer<Dataset> {
+
+    private static final int CHUNK = 1024;
+
+    public DatasetSerializer() {
+        super(Dataset.class);
+    }
+
+    @Override
+    public void serialize(Dataset dataset, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        writeHeader(dataset, gen);
+
+        gen.writeFieldName("value");
+        writeValues(dataset.getValueStore(), gen);
+
+        Object extension = dataset.getExtension();
+        if (extension != null)
+            provider.defaultSerializeField("extension", extension, gen);
+
+        gen.writeEndObject();
+    }
+
+    /**
+     * Write the fields of the dataset that precede the values, from version to dimension.
+     */
+    static void writeHeader(Dataset dataset, JsonGenerator gen) throws IOException {
+        gen.writeStringField("version", dataset.getVersion());
+        gen.writeStringField("class", dataset.getClazz());
+
+        if (dataset.getLabel().isPresent())
+            gen.writeStringField("label", dataset.getLabel().get());
+        if (dataset.getSource().isPresent())
+            gen.writeStringField("source", dataset.getSource().get());
+        if (dataset.getUpdated().isPresent())
+            gen.writeStringField("updated", formatUpdated(dataset.getUpdated().get()));
+
+        Map<String, Dimension> dimensions = dataset.getDimension();
+        CoordinateResolver resolver = dataset.getCoordinateResolver();
+
+        gen.writeArrayFieldStart("id");
+        for (String id : dimensions.keySet())
+            gen.writeString(id);
+        gen.writeEndArray();
+
+        gen.writeArrayFieldStart("size");
+        for (int i = 0; i < resolver.getDimensionCount(); i++)
+            gen.writeNumber(resolver.getSize(i));
+        gen.writeEndArray();
+
+        ImmutableMultimap<Dimension.Roles, String> roles = dataset.getRole();
+        if (!roles.isEmpty()) {
+            gen.writeObjectFieldStart("role");
+            for (Map.Entry<Dimension.Roles, Collection<String>> role : roles.asMap().entrySet()) {
+                gen.writeArrayFieldStart(role.getKey().toString());
+                for (String id : role.getValue())
+                    gen.writeString(id);
+                gen.writeEndArray();
+            }
+            gen.writeEndObject();
+        }
+
+        gen.writeObjectFieldStart("dimension");
+        for (Map.Entry<String, Dimension> dimension : dimensions.entrySet()) {
+            gen.writeFieldName(dimension.getKey());
+            writeDimension(dimension.getValue(), gen);
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * Format the instant in a form the ECMA date parser accepts, at most with milliseconds.
+     */
+    static String formatUpdated(Instant updated) {
+        return updated.truncatedTo(ChronoUnit.MILLIS).toString();
+    }
+
+    private static void writeDimension(Dimension dimension, JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        if (dimension.getLabel().isPresent())
+            gen.writeStringField("label", dimension.getLabel().get());
+
+        Dimension.Category category = dimension.getCategory();
+        gen.writeObjectFieldStart("category");
+        gen.writeArrayFieldStart("index");
+        for (String index : category.getIndex())
+            gen.writeString(index);
+        gen.writeEndArray();
+        if (!category.getLabel().isEmpty()) {
+            gen.writeObjectFieldStart("label");
+            for (Map.Entry<String, String> label : category.getLabel().entrySet())
+                gen.writeStringField(label.getKey(), label.getValue());
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+    }
+
+    private void writeValues(ValueStore values, JsonGenerator gen) throws IOException {
+        int size = values.size();
+        int count = values.count();
+        boolean integral = values.isIntegral();
+
+        // A missing value costs "null," in an array, a value costs "index": in an object.
+        int digits = Integer.toString(size).length();
+        if ((long) (size - count) * 5 > (long) count * (digits + 3)) {
+            gen.writeStartObject();
+            for (int index = values.nextIndex(0); index >= 0; index = values.nextIndex(index + 1)) {
+                gen.writeFieldId(index);
+                writeNumber(values.getDouble(index), integral, gen);
+            }
+            gen.writeEndObject();
+            return;
+        }
+
+        gen.writeStartArray(size);
+        double[] chunk = new double[Math.min(CHUNK, size)];
+        for (int index = 0; index < size; index += chunk.length) {
+            int length = Math.min(chunk.length, size - index);
+            values.copyTo(index, chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+                // Missing values are NaN, and NaN cannot be represented in JSON.
+                if (Double.isNaN(chunk[i]))
+                    gen.writeNull();
+                else
+                    writeNumber(chunk[i], integral, gen);
+            }
+        }
+        gen.writeEndArray();
+    }
+
+    static void writeNumber(double value, boolean integral, JsonGenerator gen) throws IOException {
+        if (integral)
+            gen.writeNumber((int) value);
+        else
+            gen.writeNumber(value);
+    }
+}
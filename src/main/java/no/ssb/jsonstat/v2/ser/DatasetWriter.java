@@ -0,0 +1,194 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetWriter.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.ser;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetValueBuilder;
+import no.ssb.jsonstat.v2.ValueStore;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Writes a JSON-stat dataset to an {@link OutputStream} without keeping its values in memory.
+ * <p>
+ * The metadata and the dimensions are written when the writer is created. Values are then appended in
+ * row-major order and flushed to the stream every chunk size values. Closing the writer checks that all
+ * the cells of the dataset were written and ends the document:
+ * <pre>
+ *   try (DatasetWriter writer = new DatasetWriter(mapper, out, Dataset.create("label").withDimensions(...))) {
+ *       writer.append(1.5).appendMissing().appendBlock(values, 0, values.length);
+ *   }
+ * </pre>
+ * Integral values are written without decimals, {@link Double#NaN} is written as a missing value.
+ * <p>
+ * The stream is flushed but not closed by the writer, it stays owned by the caller.
+ */
+public class DatasetWriter implements Closeable {
+
+    public static final int DEFAULT_CHUNK_SIZE = 8192;
+
+    private final JsonGenerator gen;
+    private final Object extension;
+    private final int size;
+    private final double[] chunk;
+
+    private int length = 0;
+    private int written = 0;
+    private boolean closed = false;
+
+    /**
+     * Create a writer with the default chunk size.
+     *
+     * @see #DatasetWriter(ObjectMapper, OutputStream, DatasetValueBuilder, int)
+     */
+    public DatasetWriter(ObjectMapper mapper, OutputStream out, DatasetValueBuilder dataset) throws IOException {
+        this(mapper, out, dataset, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a writer and write the metadata and the dimensions of the dataset.
+     *
+     * @param mapper    the mapper used to write the extension
+     * @param out       the stream to write to
+     * @param dataset   the dataset, with its dimensions
+     * @param chunkSize the number of values to buffer before flushing the stream
+     */
+    public DatasetWriter(ObjectMapper mapper, OutputStream out, DatasetValueBuilder dataset, int chunkSize)
+            throws IOException {
+        checkNotNull(mapper);
+        checkNotNull(out);
+        checkNotNull(dataset);
+        checkArgument(chunkSize > 0, "chunk size must be positive");
+
+        // The values are not known yet, an empty store is enough to describe the dataset.
+        Dataset header = dataset.withValues(ValueStore.builder()).build();
+        this.extension = header.getExtension();
+        this.size = header.getCoordinateResolver().size();
+        this.chunk = new double[Math.min(chunkSize, Math.max(size, 1))];
+
+        gen = mapper.getFactory().createGenerator(out);
+        // An incomplete dataset must not look like a valid document.
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        gen.writeStartObject();
+        DatasetSerializer.writeHeader(header, gen);
+        gen.writeArrayFieldStart("value");
+    }
+
+    /**
+     * Append a value, {@link Double#NaN} is considered missing.
+     *
+     * @throws IllegalArgumentException if all the cells were already written
+     */
+    public DatasetWriter append(double value) throws IOException {
+        checkState(!closed, "the writer was closed");
+        checkArgument(written + length < size, "too many values, the dataset only has %s cells", size);
+        chunk[length++] = value;
+        if (length == chunk.length)
+            flushChunk();
+        return this;
+    }
+
+    /**
+     * Append a missing value.
+     *
+     * @throws IllegalArgumentException if all the cells were already written
+     */
+    public DatasetWriter appendMissing() throws IOException {
+        return append(Double.NaN);
+    }
+
+    /**
+     * Append length values from the array, starting at offset. {@link Double#NaN} is considered missing.
+     *
+     * @throws IllegalArgumentException if the values do not fit in the remaining cells
+     */
+    public DatasetWriter appendBlock(double[] values, int offset, int length) throws IOException {
+        checkState(!closed, "the writer was closed");
+        checkPositionIndexes(offset, offset + length, values.length);
+        checkArgument(written + this.length + length <= size,
+                "too many values, the dataset only has %s cells", size);
+        while (length > 0) {
+            int copied = Math.min(length, chunk.length - this.length);
+            System.arraycopy(values, offset, chunk, this.length, copied);
+            this.length += copied;
+            offset += copied;
+            length -= copied;
+            if (this.length == chunk.length)
+                flushChunk();
+        }
+        return this;
+    }
+
+    /**
+     * Return the number of values appended so far.
+     */
+    public int position() {
+        return written + length;
+    }
+
+    /**
+     * End the document and close the generator. The stream is flushed, not closed.
+     *
+     * @throws IllegalStateException if fewer values than cells were appended
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            flushChunk();
+            checkState(written == size, "expected %s values but %s were written", size, written);
+            gen.writeEndArray();
+            if (extension != null) {
+                gen.writeFieldName("extension");
+                gen.writeObject(extension);
+            }
+            gen.writeEndObject();
+        } finally {
+            gen.close();
+        }
+    }
+
+    private void flushChunk() throws IOException {
+        for (int i = 0; i < length; i++) {
+            double value = chunk[i];
+            if (Double.isNaN(value))
+                gen.writeNull();
+            else
+                DatasetSerializer.writeNumber(value, isInt(value), gen);
+        }
+        written += length;
+        length = 0;
+        gen.flush();
+    }
+
+    private static boolean isInt(double value) {
+        return value == (int) value && (value != 0 || 1 / value > 0);
+    }
+}
@@ -17,26 +17,31 @@
  */
 package no.ssb.jsonstat.v2.support;
 
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
-import com.google.common.collect.UnmodifiableIterator;
+import no.ssb.jsonstat.v2.CoordinateResolver;
 import no.ssb.jsonstat.v2.Dataset;
 import no.ssb.jsonstat.v2.Dimension;
+import no.ssb.jsonstat.v2.ValueStore;
 
 import java.util.AbstractMap;
 import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -48,15 +53,28 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class DatasetTableView implements Table<List<String>, List<String>, Number> {
 
     private final Dataset source;
+    private final ValueStore values;
+    private final CoordinateResolver resolver;
 
     private final ImmutableSet<String> rows;
     private final ImmutableSet<String> columns;
-    private final ImmutableMap<String, Integer> factors;
     private final ImmutableMap<String, ImmutableList<String>> dimensions;
 
+    // Position of the row and column dimensions in the dataset.
+    private final int[] rowDimensions;
+    private final int[] columnDimensions;
+
+    // Offset in the dataset of each row and column, by ordinal.
+    private final int[] rowOffsets;
+    private final int[] columnOffsets;
+
     private final Set<List<String>> rowIndex;
     private final Set<List<String>> columnIndex;
 
+    // Row and column keys, by ordinal.
+    private final List<List<String>> rowKeys;
+    private final List<List<String>> columnKeys;
+
     private final Integer size;
 
 
@@ -75,19 +93,15 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
         checkArgument(dataset.getId().size() >= 2, "need at least two dimensions to " +
                 "represent as a table");
 
-        ImmutableMap.Builder<String, Integer> factors = ImmutableMap.builder();
-
-        UnmodifiableIterator<Integer> sizeIterator = dataset.getSize().reverse().iterator();
-        UnmodifiableIterator<String> idIterator = dataset.getId().asList().reverse().iterator();
+        this.values = source.getValueStore();
+        this.resolver = source.getCoordinateResolver();
 
-        factors.put(idIterator.next(), 1);
+        ImmutableList<String> ids = dataset.getId().asList();
+        this.rowDimensions = this.rows.stream().mapToInt(ids::indexOf).toArray();
+        this.columnDimensions = this.columns.stream().mapToInt(ids::indexOf).toArray();
 
-        Integer size = 1;
-        while (sizeIterator.hasNext() && idIterator.hasNext()) {
-            size *= sizeIterator.next();
-            factors.put(idIterator.next(), size);
-        }
-        this.factors = factors.build();
+        this.rowOffsets = computeOffsets(rowDimensions);
+        this.columnOffsets = computeOffsets(columnDimensions);
 
         ImmutableMap.Builder<String, ImmutableList<String>> dimensions = ImmutableMap.builder();
         for (Map.Entry<String, Dimension> dimensionEntry : source.getDimension().entrySet()) {
@@ -100,7 +114,10 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
         this.rowIndex = computeIndex(rows);
         this.columnIndex = computeIndex(colums);
 
-        this.size = source.getSize().stream().reduce(1, (a, b) -> a * b);
+        this.rowKeys = computeKeys(rows);
+        this.columnKeys = computeKeys(colums);
+
+        this.size = resolver.size();
     }
 
     /**
@@ -129,6 +146,51 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
         }
     }
 
+    /**
+     * Compute the offset in the dataset of every combination of categories of the given dimensions, in
+     * the order of the cartesian product.
+     */
+    private int[] computeOffsets(int[] dimensions) {
+        int count = 1;
+        for (int dimension : dimensions) {
+            count = Math.multiplyExact(count, resolver.getSize(dimension));
+        }
+
+        int[] offsets = new int[count];
+        int[] ordinals = new int[dimensions.length];
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            offsets[i] = offset;
+            // Increment the ordinals, last dimension first.
+            for (int j = dimensions.length - 1; j >= 0; j--) {
+                int stride = resolver.getStride(dimensions[j]);
+                if (++ordinals[j] < resolver.getSize(dimensions[j])) {
+                    offset += stride;
+                    break;
+                }
+                offset -= (ordinals[j] - 1) * stride;
+                ordinals[j] = 0;
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Return the offset in the dataset of the given categories, or -1 if a category does not exist.
+     */
+    private int offsetOf(List<?> key, int[] dimensions) {
+        if (key.size() != dimensions.length)
+            return -1;
+        int offset = 0;
+        for (int i = 0; i < dimensions.length; i++) {
+            int ordinal = resolver.ordinal(dimensions[i], key.get(i));
+            if (ordinal == -1)
+                return -1;
+            offset += ordinal * resolver.getStride(dimensions[i]);
+        }
+        return offset;
+    }
+
     private Set<List<String>> computeIndex(Set<String> dimensions) {
         List<Set<String>> rowDimensions = Lists.newArrayList();
         for (String row : dimensions) {
@@ -137,6 +199,14 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
         return Sets.cartesianProduct(rowDimensions);
     }
 
+    private List<List<String>> computeKeys(Set<String> dimensions) {
+        List<List<String>> keyDimensions = Lists.newArrayList();
+        for (String key : dimensions) {
+            keyDimensions.add(this.dimensions.get(key));
+        }
+        return Lists.cartesianProduct(keyDimensions);
+    }
+
     @Override
     public boolean containsRow(Object rowKey) {
         return safeContainsKey(rowMap(), rowKey);
@@ -174,27 +244,35 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
 
     @Override
     public Number get(Object rowKey, Object columnKey) {
-        try {
-            List<String> rowList = ((List<String>) rowKey);
-            List<String> columnList = ((List<String>) columnKey);
-            ImmutableList<String> rows = this.rows.asList();
-            int index = 0;
-            for (int i = 0; i < rows.size(); i++) {
-                String key = rowList.get(i);
-                String row = rows.get(i);
-                index += dimensions.get(row).indexOf(key) * factors.get(row);
-            }
+        if (!(rowKey instanceof List) || !(columnKey instanceof List))
+            return null;
 
-            ImmutableList<String> columns = this.columns.asList();
-            for (int i = 0; i < columns.size(); i++) {
-                String key = columnList.get(i);
-                String column = columns.get(i);
-                index += dimensions.get(column).indexOf(key) * factors.get(column);
-            }
-            return source.getValue().get(index);
-        } catch (ClassCastException e) {
+        int rowOffset = offsetOf((List<?>) rowKey, rowDimensions);
+        int columnOffset = offsetOf((List<?>) columnKey, columnDimensions);
+        if (rowOffset == -1 || columnOffset == -1)
             return null;
-        }
+
+        return values.get(rowOffset + columnOffset);
+    }
+
+    /**
+     * Return the value at the given row and column ordinals, that is the position of the keys in
+     * {@link #rowKeySet()} and {@link #columnKeySet()}.
+     *
+     * @throws IndexOutOfBoundsException if an ordinal is outside the table
+     */
+    public Number get(int rowOrdinal, int columnOrdinal) {
+        return values.get(rowOffsets[rowOrdinal] + columnOffsets[columnOrdinal]);
+    }
+
+    /**
+     * Return the value at the given row and column ordinals, or {@link Double#NaN} if it is missing.
+     *
+     * @throws IndexOutOfBoundsException if an ordinal is outside the table
+     * @see #get(int, int)
+     */
+    public double getDouble(int rowOrdinal, int columnOrdinal) {
+        return values.getDouble(rowOffsets[rowOrdinal] + columnOffsets[columnOrdinal]);
     }
 
     @Override
@@ -209,62 +287,55 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
 
     @Override
     public Map<List<String>, Number> row(List<String> rowKey) {
-        return new AbstractMap<List<String>, Number>() {
-
-            @Override
-            public Set<Entry<List<String>, Number>> entrySet() {
-                return new AbstractSet<Entry<List<String>, Number>>() {
-                    @Override
-                    public Iterator<Entry<List<String>, Number>> iterator() {
-                        return Iterators.transform(
-                                DatasetTableView.this.columnKeySet().iterator(),
-                                columnKey -> {
-                                    return new SimpleEntry<>(columnKey, DatasetTableView.this.get(rowKey, columnKey));
-                                }
-                        );
-                    }
-
-                    @Override
-                    public int size() {
-                        return DatasetTableView.this.columnKeySet().size();
-                    }
-                };
-            }
-        };
+        int rowOffset = offsetOf(rowKey, rowDimensions);
+        if (rowOffset == -1)
+            return Collections.emptyMap();
+        return new SliceMap(rowOffset, columnKeys, columnOffsets, columnDimensions);
     }
 
     @Override
     public Map<List<String>, Number> column(List<String> columnKey) {
-        return new AbstractMap<List<String>, Number>() {
-
-            @Override
-            public Set<Entry<List<String>, Number>> entrySet() {
-                return new AbstractSet<Entry<List<String>, Number>>() {
-                    @Override
-                    public Iterator<Entry<List<String>, Number>> iterator() {
-                        return Iterators.transform(
-                                DatasetTableView.this.rowKeySet().iterator(),
-                                rowKey -> {
-                                    return new SimpleEntry<>(rowKey, DatasetTableView.this.get(rowKey, columnKey));
-                                }
-                        );
-                    }
-
-                    @Override
-                    public int size() {
-                        return DatasetTableView.this.rowKeySet().size();
-                    }
-                };
-            }
-        };
+        int columnOffset = offsetOf(columnKey, columnDimensions);
+        if (columnOffset == -1)
+            return Collections.emptyMap();
+        return new SliceMap(columnOffset, rowKeys, rowOffsets, rowDimensions);
     }
 
     @Override
     public Set<Cell<List<String>, List<String>, Number>> cellSet() {
-        Set<List<List<String>>> lists = Sets.cartesianProduct(rowKeySet(), columnKeySet());
-        return lists.stream().map(dimensions -> {
-            return Tables.immutableCell(dimensions.get(0), dimensions.get(1), get(dimensions.get(0), dimensions.get(1)));
-        }).collect(Collectors.toSet());
+        return new AbstractSet<Cell<List<String>, List<String>, Number>>() {
+
+            @Override
+            public Iterator<Cell<List<String>, List<String>, Number>> iterator() {
+                return Spliterators.iterator(spliterator());
+            }
+
+            @Override
+            public Spliterator<Cell<List<String>, List<String>, Number>> spliterator() {
+                return new CellSpliterator(0, rowOffsets.length);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Cell))
+                    return false;
+                Cell<?, ?, ?> cell = (Cell<?, ?, ?>) o;
+                if (!(cell.getRowKey() instanceof List) || !(cell.getColumnKey() instanceof List))
+                    return false;
+
+                int rowOffset = offsetOf((List<?>) cell.getRowKey(), rowDimensions);
+                int columnOffset = offsetOf((List<?>) cell.getColumnKey(), columnDimensions);
+                if (rowOffset == -1 || columnOffset == -1)
+                    return false;
+
+                return Objects.equals(values.get(rowOffset + columnOffset), cell.getValue());
+            }
+
+            @Override
+            public int size() {
+                return Math.multiplyExact(rowOffsets.length, columnOffsets.length);
+            }
+        };
     }
 
     @Override
@@ -274,54 +345,249 @@ public class DatasetTableView implements Table<List<String>, List<String>, Numbe
 
     @Override
     public Map<List<String>, Map<List<String>, Number>> rowMap() {
-        return new AbstractMap<List<String>, Map<List<String>, Number>>() {
-            @Override
-            public Set<Entry<List<String>, Map<List<String>, Number>>> entrySet() {
-                return new AbstractSet<Entry<List<String>, Map<List<String>, Number>>>() {
-                    @Override
-                    public Iterator<Entry<List<String>, Map<List<String>, Number>>> iterator() {
-                        return Iterators.transform(
-                                rowKeySet().iterator(),
-                                rowKey -> {
-                                    return new SimpleEntry<>(
-                                            rowKey, DatasetTableView.this.row(rowKey)
-                                    );
-                                });
-                    }
-
-                    @Override
-                    public int size() {
-                        return rowKeySet().size();
-                    }
-                };
-            }
-        };
+        return new SlicesMap(rowKeys, rowOffsets, rowDimensions, columnKeys, columnOffsets, columnDimensions);
     }
 
     @Override
     public Map<List<String>, Map<List<String>, Number>> columnMap() {
-        return new AbstractMap<List<String>, Map<List<String>, Number>>() {
-            @Override
-            public Set<Entry<List<String>, Map<List<String>, Number>>> entrySet() {
-                return new AbstractSet<Entry<List<String>, Map<List<String>, Number>>>() {
-                    @Override
-                    public Iterator<Entry<List<String>, Map<List<String>, Number>>> iterator() {
-                        return Iterators.transform(
-                                columnKeySet().iterator(),
-                                columnKey -> {
-                                    return new SimpleEntry<>(
-                                            columnKey, DatasetTableView.this.column(columnKey)
-                                    );
-                                });
-                    }
-
-                    @Override
-                    public int size() {
-                        return columnKeySet().size();
-                    }
-                };
+        return new SlicesMap(columnKeys, columnOffsets, columnDimensions, rowKeys, rowOffsets, rowDimensions);
+    }
+
+    /**
+     * Go through the table row by row.
+     * <p>
+     * The values of each row are copied in a buffer that is reused from one row to the other, so that
+     * no object is allocated per cell.
+     *
+     * @param visitor the visitor called for each row, in the order of {@link #rowKeySet()}
+     */
+    public void forEachRow(RowVisitor visitor) {
+        checkNotNull(visitor, "visitor cannot be null");
+
+        double[] buffer = new double[columnOffsets.length];
+        boolean contiguous = isContiguous(columnOffsets);
+        for (int row = 0; row < rowOffsets.length; row++) {
+            int rowOffset = rowOffsets[row];
+            if (contiguous) {
+                values.copyTo(rowOffset, buffer, 0, buffer.length);
+            } else {
+                for (int column = 0; column < buffer.length; column++) {
+                    buffer[column] = values.getDouble(rowOffset + columnOffsets[column]);
+                }
             }
-        };
+            visitor.visit(row, rowKeys.get(row), buffer);
+        }
+    }
+
+    /**
+     * Return true if the offsets follow each other, that is when the columns are the last dimensions
+     * of the dataset.
+     */
+    private static boolean isContiguous(int[] offsets) {
+        for (int i = 0; i < offsets.length; i++) {
+            if (offsets[i] != i)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Visitor used by {@link #forEachRow(RowVisitor)}.
+     */
+    @FunctionalInterface
+    public interface RowVisitor {
+
+        /**
+         * Visit a row.
+         *
+         * @param ordinal the position of the row in {@link #rowKeySet()}
+         * @param rowKey  the categories of the row
+         * @param values  the values of the row by column ordinal, {@link Double#NaN} when missing. The array
+         *                is reused and only valid during the call
+         */
+        void visit(int ordinal, List<String> rowKey, double[] values);
+    }
+
+    /**
+     * A row or a column of the table, that is the values found at a fixed base offset plus the offsets
+     * of the keys of the other axis.
+     */
+    private class SliceMap extends AbstractMap<List<String>, Number> {
+
+        private final int base;
+        private final List<List<String>> keys;
+        private final int[] offsets;
+        private final int[] dimensions;
+
+        private SliceMap(int base, List<List<String>> keys, int[] offsets, int[] dimensions) {
+            this.base = base;
+            this.keys = keys;
+            this.offsets = offsets;
+            this.dimensions = dimensions;
+        }
+
+        @Override
+        public Number get(Object key) {
+            if (!(key instanceof List))
+                return null;
+            int offset = offsetOf((List<?>) key, dimensions);
+            return offset == -1 ? null : values.get(base + offset);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof List && offsetOf((List<?>) key, dimensions) != -1;
+        }
+
+        @Override
+        public Set<Entry<List<String>, Number>> entrySet() {
+            return new AbstractSet<Entry<List<String>, Number>>() {
+                @Override
+                public Iterator<Entry<List<String>, Number>> iterator() {
+                    return new AbstractIterator<Entry<List<String>, Number>>() {
+
+                        private int ordinal = 0;
+
+                        @Override
+                        protected Entry<List<String>, Number> computeNext() {
+                            if (ordinal == offsets.length)
+                                return endOfData();
+                            Number value = values.get(base + offsets[ordinal]);
+                            return new SimpleImmutableEntry<>(keys.get(ordinal++), value);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return offsets.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * The rows or the columns of the table, indexed by key.
+     */
+    private class SlicesMap extends AbstractMap<List<String>, Map<List<String>, Number>> {
+
+        private final List<List<String>> keys;
+        private final int[] offsets;
+        private final int[] dimensions;
+
+        private final List<List<String>> otherKeys;
+        private final int[] otherOffsets;
+        private final int[] otherDimensions;
+
+        private SlicesMap(List<List<String>> keys, int[] offsets, int[] dimensions,
+                          List<List<String>> otherKeys, int[] otherOffsets, int[] otherDimensions) {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.dimensions = dimensions;
+            this.otherKeys = otherKeys;
+            this.otherOffsets = otherOffsets;
+            this.otherDimensions = otherDimensions;
+        }
+
+        @Override
+        public Map<List<String>, Number> get(Object key) {
+            if (!(key instanceof List))
+                return null;
+            int offset = offsetOf((List<?>) key, dimensions);
+            return offset == -1 ? null : new SliceMap(offset, otherKeys, otherOffsets, otherDimensions);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof List && offsetOf((List<?>) key, dimensions) != -1;
+        }
+
+        @Override
+        public Set<Entry<List<String>, Map<List<String>, Number>>> entrySet() {
+            return new AbstractSet<Entry<List<String>, Map<List<String>, Number>>>() {
+                @Override
+                public Iterator<Entry<List<String>, Map<List<String>, Number>>> iterator() {
+                    return new AbstractIterator<Entry<List<String>, Map<List<String>, Number>>>() {
+
+                        private int ordinal = 0;
+
+                        @Override
+                        protected Entry<List<String>, Map<List<String>, Number>> computeNext() {
+                            if (ordinal == offsets.length)
+                                return endOfData();
+                            SliceMap slice = new SliceMap(offsets[ordinal], otherKeys, otherOffsets, otherDimensions);
+                            return new SimpleImmutableEntry<>(keys.get(ordinal++), slice);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return offsets.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Goes through the cells row by row. Splits are made on row boundaries.
+     */
+    private class CellSpliterator implements Spliterator<Cell<List<String>, List<String>, Number>> {
+
+        private int row;
+        private int column = 0;
+        private final int endRow;
+
+        private List<String> rowKey;
+
+        private CellSpliterator(int row, int endRow) {
+            this.row = row;
+            this.endRow = endRow;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Cell<List<String>, List<String>, Number>> action) {
+            if (row >= endRow || columnOffsets.length == 0)
+                return false;
+
+            if (column == 0)
+                rowKey = rowKeys.get(row);
+
+            action.accept(Tables.immutableCell(rowKey, columnKeys.get(column), get(row, column)));
+
+            if (++column == columnOffsets.length) {
+                column = 0;
+                row++;
+            }
+            return true;
+        }
+
+        @Override
+        public Spliterator<Cell<List<String>, List<String>, Number>> trySplit() {
+            // Only split whole rows.
+            int start = column == 0 ? row : row + 1;
+            int middle = (start + endRow) >>> 1;
+            if (middle <= start)
+                return null;
+
+            CellSpliterator prefix = new CellSpliterator(row, middle);
+            prefix.column = column;
+            prefix.rowKey = rowKey;
+
+            row = middle;
+            column = 0;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return (long) (endRow - row) * columnOffsets.length - column;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
     }
 
     /**
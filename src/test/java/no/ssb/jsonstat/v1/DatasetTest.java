@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v1;
+
+import com.google.common.collect.ImmutableMap;
+import no.ssb.jsonstat.v2.support.CubeGenerator;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DatasetTest {
+
+    private Dataset dataset;
+
+    @Before
+    public void setUp() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CubeGenerator.create("test")
+                .withDimension("a", 2)
+                .withDimension("b", 3)
+                .withDimension("c", 4)
+                .writeBundle(out, 1);
+        dataset = Stat.parse(new ByteArrayInputStream(out.toByteArray())).getDataset(0).get();
+    }
+
+    @Test
+    public void testGetRowsByInnerDimension() throws Exception {
+
+        List<List<Data>> rows = dataset.getRows(dataset.getDimension("b").get());
+
+        assertThat(rows).hasSize(3);
+        for (int b = 0; b < 3; b++) {
+            List<Data> row = rows.get(b);
+            assertThat(row).hasSize(8);
+            for (int a = 0; a < 2; a++) {
+                for (int c = 0; c < 4; c++) {
+                    assertThat(row.get(a * 4 + c)).isSameAs(dataset.getValue(new int[]{a, b, c}));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMutatingRowsLeavesDatasetUnchanged() throws Exception {
+
+        Dimension b = dataset.getDimension("b").get();
+        List<Data> values = new ArrayList<>(dataset.getValues());
+        List<List<Data>> expected = dataset.getRows(b);
+
+        // The rows are copies, the table adds its labels to them.
+        List<List<Data>> rows = dataset.getRows(b);
+        rows.get(0).add(0, rows.get(1).get(0));
+        rows.get(1).set(0, rows.get(2).get(0));
+        rows.get(2).clear();
+
+        assertThat(rows.get(0)).hasSize(9);
+        assertThat(dataset.getValues()).containsExactlyElementsOf(values);
+        assertThat(dataset.getRows(b)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testGetRowsByOuterDimension() throws Exception {
+
+        List<List<Data>> rows = dataset.getRows(dataset.getDimension("a").get());
+
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(1)).containsExactlyElementsOf(dataset.getValues().subList(12, 24));
+    }
+
+    @Test
+    public void testGetSlice() throws Exception {
+
+        Slice slice = dataset.getSliceView(ImmutableMap.of("b", "b2"));
+
+        assertThat(slice.getDimensions()).extracting(Dimension::getId).containsExactly("a", "c");
+        assertThat(slice).hasSize(8);
+        for (int a = 0; a < 2; a++) {
+            for (int c = 0; c < 4; c++) {
+                Data value = dataset.getValue(new int[]{a, 2, c});
+                assertThat(slice.getValue(a, c)).isSameAs(value);
+                assertThat(slice.get(a * 4 + c)).isSameAs(value);
+            }
+        }
+
+        assertThat(dataset.getSlice(ImmutableMap.of("a", "a1", "c", "c3")))
+                .containsExactly(dataset.getValue(new int[]{1, 0, 3}), dataset.getValue(new int[]{1, 1, 3}),
+                        dataset.getValue(new int[]{1, 2, 3}));
+        assertThat(dataset.getSlice(ImmutableMap.of("a", "a1", "b", "b0", "c", "c3")))
+                .containsExactly(dataset.getValue(new int[]{1, 0, 3}));
+        assertThat(dataset.getSlice(ImmutableMap.of())).containsExactlyElementsOf(dataset.getValues());
+    }
+
+    @Test
+    public void testGetSliceIsMutable() throws Exception {
+
+        List<Data> slice = dataset.getSlice(ImmutableMap.of("b", "b2"));
+        slice.add(0, dataset.getValue(0));
+        slice.sort(Comparator.comparing(Data::toString));
+
+        assertThat(slice).hasSize(9);
+        assertThat(dataset.getSlice(ImmutableMap.of("b", "b2")))
+                .containsExactlyElementsOf(dataset.getSliceView(ImmutableMap.of("b", "b2")));
+    }
+
+    @Test
+    public void testGetSliceFailsOnUnknownCategory() throws Exception {
+
+        assertThatThrownBy(() -> dataset.getSlice(ImmutableMap.of("b", "b9")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("b9");
+        assertThatThrownBy(() -> dataset.getValue(ImmutableMap.of("a", "a1", "b", "x", "c", "c0")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
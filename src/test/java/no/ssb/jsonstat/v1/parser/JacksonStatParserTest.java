@@ -0,0 +1,193 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     JacksonStatParserTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v1.parser;
+
+import com.google.common.io.Resources;
+import no.ssb.jsonstat.v1.Data;
+import no.ssb.jsonstat.v1.Dataset;
+import no.ssb.jsonstat.v1.Dimension;
+import no.ssb.jsonstat.v1.Stat;
+import no.ssb.jsonstat.v2.support.CubeGenerator;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharConversionException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JacksonStatParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testParseBundle() throws Exception {
+
+        Stat stat = new JacksonStatParser().parse(
+                Resources.getResource("no/ssb/jsonstat/v2/ssb-api.json").openStream()
+        );
+
+        assertThat(stat.getDatasets()).hasSize(1);
+        Dataset dataset = stat.getDataset("dataset").get();
+        assertThat(dataset.getDimensions()).extracting(Dimension::getId)
+                .containsExactly("Kjonn", "Alder", "ContentsCode", "Tid");
+        assertThat(dataset.getDimensions()).extracting(Dimension::getSize)
+                .containsExactly(3, 10, 6, 7);
+        assertThat(dataset.size()).isEqualTo(3 * 10 * 6 * 7);
+        assertThat(dataset.getValue(0).getValue()).isInstanceOf(BigDecimal.class);
+    }
+
+    @Test
+    public void testDimensionsBeforeIdAndSize() throws Exception {
+
+        String json = "{\"test\": {" +
+                "\"value\": {\"0\": 1, \"1\": 2.5, \"2\": null}," +
+                "\"status\": {\"1\": \"e\"}," +
+                "\"dimension\": {" +
+                "  \"a\": {\"label\": \"A\", \"category\": {" +
+                "    \"index\": {\"a1\": 0, \"a2\": 1, \"a3\": 2}," +
+                "    \"label\": {\"a1\": \"A 1\"}," +
+                "    \"child\": {\"a1\": [\"a2\", \"a3\"]}}}," +
+                "  \"id\": [\"a\"]," +
+                "  \"size\": [3]" +
+                "}}}";
+
+        Stat stat = new JacksonStatParser().parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+        Dataset dataset = stat.getDataset(0).get();
+
+        assertThat(dataset.getValues()).extracting(Data::getValue)
+                .containsExactly(BigDecimal.valueOf(1), BigDecimal.valueOf(2.5), "null");
+
+        Dimension dimension = dataset.getDimension("a").get();
+        assertThat(dimension.getLabel()).contains("A");
+        assertThat(dimension.getCategory()).containsExactly("a1", "a2", "a3");
+        assertThat(dimension.getCategory().getLabel("a1")).contains("A 1");
+        assertThat(dimension.getCategory().getChild("a1")).containsExactly("a2", "a3");
+    }
+
+    @Test
+    public void testParseLazily() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CubeGenerator.create("test")
+                .withDimension("a", 4)
+                .withDimension("b", 5)
+                .writeBundle(out, 3);
+        // The last dataset can not be parsed, the updated date has no time.
+        String json = out.toString("UTF-8");
+        json = json.substring(0, json.length() - 1) + ",\"broken\": {\"updated\": \"2012-11-27\"}}";
+        byte[] bundle = json.getBytes(StandardCharsets.UTF_8);
+
+        Stat stat = new JacksonStatParser().parseLazily(bundle);
+        assertThat(stat.getIds()).containsExactly("test0", "test1", "test2", "broken");
+
+        Dataset lazy = stat.getDataset("test1").get();
+        assertThat(stat.getDataset(1).get()).isSameAs(lazy);
+
+        out.reset();
+        CubeGenerator.create("test").withDimension("a", 4).withDimension("b", 5).writeBundle(out, 3);
+        Dataset eager = new JacksonStatParser().parse(new ByteArrayInputStream(out.toByteArray()))
+                .getDataset("test1").get();
+        assertThat(lazy.getValues()).extracting(Data::getValue)
+                .containsExactlyElementsOf(eager.getValues().stream().map(Data::getValue)::iterator);
+        assertThat(lazy.getDimensions()).isEqualTo(eager.getDimensions());
+
+        assertThat(stat.getDataset("missing")).isEmpty();
+        assertThatThrownBy(() -> stat.getDataset("broken")).isInstanceOf(DateTimeParseException.class);
+    }
+
+    @Test
+    public void testParseLazilyFromFile() throws Exception {
+
+        Path file = folder.newFile("bundle.json").toPath();
+        CubeGenerator.create("test")
+                .withDimension("a", 4)
+                .withDimension("b", 5)
+                .writeBundle(file, 3);
+
+        Stat stat = new JacksonStatParser().parseLazily(file);
+        assertThat(stat.getIds()).containsExactly("test0", "test1", "test2");
+
+        Stat eager = new JacksonStatParser().parse(Files.newInputStream(file));
+        for (int i = 0; i < 3; i++) {
+            Dataset lazy = stat.getDataset(i).get();
+            assertThat(lazy.getValues()).extracting(Data::getValue)
+                    .containsExactlyElementsOf(eager.getDataset(i).get().getValues().stream()
+                            .map(Data::getValue)::iterator);
+            assertThat(lazy.getDimensions()).isEqualTo(eager.getDataset(i).get().getDimensions());
+        }
+    }
+
+    @Test
+    public void testParseLazilyWithByteOrderMark() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        CubeGenerator.create("test")
+                .withDimension("a", 4)
+                .withDimension("b", 5)
+                .writeBundle(out, 2);
+        byte[] bundle = out.toByteArray();
+        Path file = folder.newFile("bom.json").toPath();
+        Files.write(file, bundle);
+
+        Stat eager = new JacksonStatParser().parse(new ByteArrayInputStream(bundle));
+        for (Stat lazy : Arrays.asList(
+                new JacksonStatParser().parseLazily(bundle), new JacksonStatParser().parseLazily(file))) {
+            assertThat(lazy.getIds()).containsExactly("test0", "test1");
+            for (int i = 0; i < 2; i++) {
+                assertThat(lazy.getDataset(i).get().getValues()).extracting(Data::getValue)
+                        .containsExactlyElementsOf(eager.getDataset(i).get().getValues().stream()
+                                .map(Data::getValue)::iterator);
+            }
+        }
+
+        byte[] utf16 = new String(bundle, 3, bundle.length - 3, StandardCharsets.UTF_8)
+                .getBytes(StandardCharsets.UTF_16LE);
+        assertThatThrownBy(() -> new JacksonStatParser().parseLazily(utf16))
+                .isInstanceOf(CharConversionException.class);
+    }
+
+    @Test
+    public void testLazyEquals() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CubeGenerator.create("test").withDimension("a", 2).writeBundle(out, 2);
+        Stat eager = new JacksonStatParser().parse(new ByteArrayInputStream(out.toByteArray()));
+
+        Stat lazy = new Stat(eager.getIds(), position -> eager.getDataset(position).get());
+        List<Dataset> datasets = lazy.getDatasets();
+
+        assertThat(lazy).isEqualTo(eager);
+        assertThat(eager).isEqualTo(lazy);
+        assertThat(lazy.hashCode()).isEqualTo(eager.hashCode());
+        assertThat(lazy.getDatasets()).isNotSameAs(datasets).isEqualTo(datasets);
+        assertThat(lazy).isNotEqualTo(new JacksonStatParser().parseLazily(out.toByteArray()));
+    }
+}
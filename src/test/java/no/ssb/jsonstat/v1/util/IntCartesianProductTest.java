@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     IntCartesianProductTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v1.util;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IntCartesianProductTest {
+
+    @Test
+    public void testIterate() throws Exception {
+
+        List<int[]> combinations = new IntCartesianProduct(new int[]{2, 3}).asList();
+
+        assertThat(combinations).containsExactly(
+                new int[]{0, 0}, new int[]{0, 1}, new int[]{0, 2},
+                new int[]{1, 0}, new int[]{1, 1}, new int[]{1, 2}
+        );
+        assertThat(new IntCartesianProduct(new int[]{2, 0}).hasNext()).isFalse();
+    }
+
+    @Test
+    public void testNextInPlace() throws Exception {
+
+        IntCartesianProduct product = new IntCartesianProduct(new int[]{2, 3});
+        int[] first = product.nextInPlace();
+        assertThat(first).containsExactly(0, 0);
+        assertThat(product.nextInPlace()).isSameAs(first).containsExactly(0, 1);
+    }
+
+    @Test
+    public void testSeekAndAdvance() throws Exception {
+
+        IntCartesianProduct product = new IntCartesianProduct(new int[]{3, 2, 4});
+        assertThat(product.size()).isEqualTo(24);
+
+        product.seek(13);
+        assertThat(product.next()).containsExactly(1, 1, 1);
+        product.advance(4);
+        assertThat(product.position()).isEqualTo(18);
+        assertThat(product.next()).containsExactly(2, 0, 2);
+
+        product.advance(100);
+        assertThat(product.hasNext()).isFalse();
+        assertThatThrownBy(() -> product.seek(25)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testParallelSpliterator() throws Exception {
+
+        IntCartesianProduct product = new IntCartesianProduct(new int[]{7, 5, 11});
+        List<Integer> flat = StreamSupport.stream(product.spliterator(), true)
+                .map(indices -> indices[0] * 55 + indices[1] * 11 + indices[2])
+                .collect(Collectors.toList());
+
+        assertThat(flat).hasSize(385);
+        for (int i = 0; i < flat.size(); i++) {
+            assertThat(flat.get(i)).isEqualTo(i);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     CoordinateResolverTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CoordinateResolverTest {
+
+    private final CoordinateResolver resolver = new CoordinateResolver(asList(
+            asList("A1", "A2", "A3"),
+            asList("B1", "B2"),
+            asList("C1", "C2", "C3", "C4")
+    ));
+
+    @Test
+    public void testStrides() throws Exception {
+        assertThat(resolver.size()).isEqualTo(24);
+        assertThat(resolver.getStride(0)).isEqualTo(8);
+        assertThat(resolver.getStride(1)).isEqualTo(4);
+        assertThat(resolver.getStride(2)).isEqualTo(1);
+    }
+
+    @Test
+    public void testIndexOf() throws Exception {
+        assertThat(resolver.indexOf("A1", "B1", "C1")).isEqualTo(0);
+        assertThat(resolver.indexOf("A2", "B2", "C3")).isEqualTo(14);
+        assertThat(resolver.indexOf(asList("A3", "B2", "C4"))).isEqualTo(23);
+        assertThat(resolver.indexOf(new int[]{1, 1, 2})).isEqualTo(14);
+
+        assertThat(resolver.indexOf("A4", "B1", "C1")).isEqualTo(-1);
+        assertThat(resolver.indexOf("A1", "B1")).isEqualTo(-1);
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        int[] ordinals = new int[3];
+        for (int index = 0; index < resolver.size(); index++) {
+            resolver.decode(index, ordinals);
+            assertThat(resolver.indexOf(ordinals)).isEqualTo(index);
+        }
+        resolver.decode(14, ordinals);
+        assertThat(ordinals).containsExactly(1, 1, 2);
+    }
+}
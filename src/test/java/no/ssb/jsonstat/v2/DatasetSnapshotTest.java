@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetSnapshotTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DatasetSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        ObjectNode extension = mapper.createObjectNode().put("contact", "someone");
+        Instant updated = Instant.parse("2016-01-01T00:00:00Z");
+
+        Dataset dataset = Dataset.create("test")
+                .withSource("source")
+                .updatedAt(updated)
+                .withExtension(extension)
+                .withDimensions(
+                        Dimension.create("year").withTimeRole().withLabel("Year")
+                                .withCategories("2014", "2015", "2016"),
+                        Dimension.create("area").withGeoRole()
+                                .withIndexedLabels(ImmutableMap.of("N", "North", "S", "South")))
+                .withValues(asList(1.5, null, 3, 4, null, 6))
+                .build();
+
+        Path path = folder.newFile().toPath();
+        DatasetSnapshot snapshot = new DatasetSnapshot(mapper);
+        snapshot.write(dataset, path);
+        Dataset read = snapshot.read(path);
+
+        assertThat(read.getStorage()).isEqualTo(ValueStore.Storage.MAPPED);
+        assertThat(read.getLabel()).contains("test");
+        assertThat(read.getSource()).contains("source");
+        assertThat(read.getUpdated()).contains(updated);
+        assertThat(read.getExtension()).isEqualTo(extension);
+        assertThat(read.getId()).containsExactly("year", "area");
+        assertThat(read.getRole()).isEqualTo(dataset.getRole());
+        assertThat(read.getDimension().get("year").getLabel()).contains("year");
+        assertThat(read.getDimension().get("area").getCategory().getLabel())
+                .isEqualTo(dataset.getDimension().get("area").getCategory().getLabel());
+
+        assertThat(read.getValue()).isEqualTo(dataset.getValue());
+        assertThat(read.getValueStore().count()).isEqualTo(4);
+        assertThat(read.isMissing(1)).isTrue();
+        assertThat(read.getValueStore().nextIndex(4)).isEqualTo(5);
+        assertThat(read.getValueStore().nextIndex(6)).isEqualTo(-1);
+    }
+
+    @Test
+    public void testIntegralValues() throws Exception {
+
+        Dataset dataset = Dataset.create()
+                .withDimensions(Dimension.create("A").withCategories("A1", "A2"))
+                .withValues(asList(1, 2))
+                .build();
+
+        Path path = folder.newFile().toPath();
+        DatasetSnapshot snapshot = new DatasetSnapshot();
+        snapshot.write(dataset, path);
+
+        assertThat(snapshot.read(path).getValue()).containsValues(1, 2);
+    }
+
+    @Test
+    public void testFailIfNotASnapshot() throws Exception {
+
+        Path path = folder.newFile().toPath();
+        Files.write(path, "{ \"not\": \"a snapshot\" }".getBytes());
+
+        assertThatThrownBy(() -> new DatasetSnapshot().read(path))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("is not a dataset snapshot");
+    }
+}
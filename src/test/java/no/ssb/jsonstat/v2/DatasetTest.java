@@ -34,11 +34,16 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.StreamSupport;
 
 import static com.google.common.collect.Lists.cartesianProduct;
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.fail;
@@ -179,6 +184,172 @@ public class DatasetTest {
 
     }
 
+    @Test
+    public void testParallelMapper() throws Exception {
+
+        DatasetValueBuilder builder = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2"),
+                        Dimension.create("C")
+                                .withCategories("C1", "C2", "C3", "C4"));
+
+        Dataset sequential = builder
+                .withMapper(strings -> String.join("", strings).hashCode()).build();
+
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            Dataset parallel = builder
+                    .withMapper(strings -> String.join("", strings).hashCode(), pool).build();
+            assertThat(parallel.getValue().entrySet()).containsExactlyElementsOf(sequential.getValue().entrySet());
+
+            Dataset halfMissing = builder
+                    .withMapper(strings -> strings.contains("B2") ? 0.5 : null, pool).build();
+            assertThat(halfMissing.getStorage()).isEqualTo(ValueStore.Storage.DENSE);
+            assertThat(halfMissing.getValue()).hasSize(12);
+            assertThat(halfMissing.getValue().get(halfMissing.indexOf("A3", "B2", "C4"))).isEqualTo(0.5);
+
+            assertThatThrownBy(() -> builder.withMapper(strings -> {
+                throw new IllegalStateException("mapper failed");
+            }, pool)).isInstanceOf(IllegalStateException.class).hasMessage("mapper failed");
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelMapperStopsOnFailure() throws Exception {
+
+        DatasetValueBuilder builder = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3", "A4"),
+                        Dimension.create("B")
+                                .withCategories(IntStream.range(0, 50).mapToObj(i -> "B" + i).toArray(String[]::new)));
+
+        AtomicInteger calls = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThatThrownBy(() -> builder.withMapper(strings -> {
+                calls.incrementAndGet();
+                if (strings.equals(asList("A1", "B0")))
+                    throw new IllegalStateException("mapper failed");
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return 1;
+            }, pool)).hasMessage("mapper failed");
+
+            // No range keeps running once the mapper failed.
+            int stopped = calls.get();
+            Thread.sleep(50);
+            assertThat(calls.get()).isEqualTo(stopped).isLessThan(200);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMapperWithAndWithoutExecutor() throws Exception {
+
+        DatasetValueBuilder builder = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2", "B3", "B4"));
+
+        List<Function<List<String>, Number>> mappers = asList(
+                strings -> strings.contains("B2") ? Double.NaN : strings.hashCode(),
+                strings -> strings.contains("A1") ? null : strings.contains("B3") ? 1.5 : Double.NaN,
+                strings -> strings.contains("B4") ? (Number) 2L : (Number) (short) 3
+        );
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        try {
+            for (Function<List<String>, Number> mapper : mappers) {
+                Dataset sequential = builder.withMapper(mapper).build();
+                Dataset parallel = builder.withMapper(mapper, pool).build();
+
+                assertThat(parallel.getStorage()).isEqualTo(sequential.getStorage());
+                assertThat(parallel.getValueStore().isIntegral()).isEqualTo(sequential.getValueStore().isIntegral());
+                assertThat(parallel.getValue().entrySet()).containsExactlyElementsOf(sequential.getValue().entrySet());
+                for (int i = 0; i < sequential.getValueStore().size(); i++) {
+                    assertThat(parallel.isMissing(i)).isEqualTo(sequential.isMissing(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testOrdinalMapper() throws Exception {
+
+        Dataset dataset = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2"))
+                .withOrdinalMapper(ordinals -> ordinals[1] == 0 ? ordinals[0] * 10 + 0.5 : Double.NaN)
+                .build();
+
+        assertThat(dataset.getValue()).containsOnlyKeys(0, 2, 4);
+        assertThat(dataset.getDouble(dataset.indexOf("A3", "B1"))).isEqualTo(20.5);
+        assertThat(dataset.isMissing(dataset.indexOf("A1", "B2"))).isTrue();
+    }
+
+    @Test
+    public void testLookup() throws Exception {
+
+        Dataset dataset = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2"),
+                        Dimension.create("C")
+                                .withCategories("C1", "C2", "C3", "C4"))
+                .withMapper(strings -> String.join("", strings).hashCode()).build();
+
+        assertThat(dataset.indexOf("A2", "B1", "C3")).isEqualTo(10);
+        assertThat(dataset.indexOf("A2", "B1", "C5")).isEqualTo(-1);
+
+        assertThat(dataset.asMap().get(asList("A2", "B1", "C3"))).isEqualTo("A2B1C3".hashCode());
+        assertThat(dataset.asMap().get(asList("A2", "B1"))).isNull();
+        assertThat(dataset.asMap().containsKey(asList("A3", "B2", "C4"))).isTrue();
+        assertThat(dataset.asMap().containsKey("A3B2C4")).isFalse();
+    }
+
+    @Test
+    public void testMetadata() throws Exception {
+
+        Dataset dataset = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A").withTimeRole()
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2"),
+                        Dimension.create("C").withGeoRole()
+                                .withCategories("C1", "C2", "C3", "C4"))
+                .withValues(Collections.nCopies(24, 1)).build();
+
+        assertThat(dataset.getId()).containsExactly("A", "B", "C").isSameAs(dataset.getId());
+        assertThat(dataset.getSize()).containsExactly(3, 2, 4).isSameAs(dataset.getSize());
+        assertThat(dataset.getRole().get(Dimension.Roles.GEO)).containsExactly("C");
+        assertThat(dataset.getRole()).isSameAs(dataset.getRole());
+
+        assertThat(dataset.getStride(0)).isEqualTo(8);
+        assertThat(dataset.getStride(1)).isEqualTo(4);
+        assertThat(dataset.getStride(2)).isEqualTo(1);
+        assertThat(dataset.getCellCount()).isEqualTo(24);
+    }
+
     @Test
     public void checkAddTuple() throws Exception {
 
@@ -252,6 +423,86 @@ public class DatasetTest {
 
     }
 
+    @Test
+    public void testAddTuple() throws Exception {
+
+        DatasetValueBuilder builder = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2")
+                );
+
+        builder.addTuple(list("A3", "B2"), 2);
+        builder.addTuple(list("A1", "B1"), 1);
+        builder.addTuple(list("A2", "B2"), 6);
+        builder.addTuple(list("A1", "B2"), 3);
+        builder.addTuple(list("A3", "B1"), 4);
+
+        assertThatThrownBy(() -> builder.addTuple(list("A4", "B1"), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.addTuple(list("A1"), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        Dataset dataset = builder.build();
+        assertThat(dataset.getValue().values()).containsExactly(1, 3, 6, 4, 2);
+        assertThat(dataset.isMissing(dataset.indexOf("A2", "B1"))).isTrue();
+    }
+
+    @Test
+    public void testAddTupleAfterBuild() throws Exception {
+
+        DatasetValueBuilder builder = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2")
+                );
+
+        builder.addTuple(list("A1", "B1"), 1);
+        builder.addTuple(list("A2", "B2"), 4);
+        builder.addTuple(list("A2", "B2"), null);
+
+        Dataset first = builder.build();
+        Dataset second = builder.build();
+        assertThat(first.getValue().values()).containsExactly(1, 4);
+        assertThat(second.getValue().values()).containsExactly(1, 4);
+
+        builder.addTuple(list("A1", "B2"), 2);
+        Dataset third = builder.build();
+        assertThat(third.getValue().values()).containsExactly(1, 2, 4);
+        assertThat(first.getValue().values()).containsExactly(1, 4);
+    }
+
+    @Test
+    public void testAddTuples() throws Exception {
+
+        DatasetValueBuilder builder = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A")
+                                .withCategories("A1", "A2", "A3"),
+                        Dimension.create("B")
+                                .withCategories("B1", "B2")
+                );
+
+        builder.addTuples(
+                new int[]{2, 1, 0, 0, 1, 1, 0, 1},
+                new double[]{2, 1, 6, Double.NaN}
+        ).addTuple(new int[]{2, 0}, 4.5);
+
+        assertThatThrownBy(() -> builder.addTuples(new int[]{0, 0, 1}, new double[]{1, 2}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> builder.addTuple(new int[]{3, 0}, 1))
+                .isInstanceOf(IndexOutOfBoundsException.class);
+
+        Dataset dataset = builder.build();
+        assertThat(dataset.getValue()).containsOnlyKeys(0, 3, 4, 5);
+        assertThat(dataset.getDouble(dataset.indexOf("A3", "B1"))).isEqualTo(4.5);
+        assertThat(dataset.getDouble(dataset.indexOf("A2", "B2"))).isEqualTo(6);
+    }
+
     @Test
     public void testExtension() throws Exception {
 
@@ -27,6 +27,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 public class DimensionTest {
@@ -59,4 +60,52 @@ public class DimensionTest {
 
         assertThat(value).isNotNull();
     }
+
+    @Test
+    public void testContainsAndIndexOf() throws Exception {
+
+        Dimension.Builder builder = Dimension.create("test")
+                .withIndex(ImmutableSet.of("a", "b"))
+                .withIndexedLabels(ImmutableMap.of("b", "label b", "c", "label c"));
+
+        assertThat(builder.contains("b")).isTrue();
+        assertThat(builder.contains("d")).isFalse();
+        assertThat(builder.indexOf("a")).isEqualTo(0);
+        assertThat(builder.indexOf("c")).isEqualTo(2);
+        assertThat(builder.indexOf("d")).isEqualTo(-1);
+        assertThat(builder.getIndex()).containsExactly("a", "b", "c");
+
+        assertThatThrownBy(() -> builder.withIndexedLabels(ImmutableMap.of("c", "again")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testIndexIsCopiedOnce() throws Exception {
+
+        Dimension.Builder builder = Dimension.create("test").withCategories("a", "b");
+
+        ImmutableSet<String> index = builder.getIndex();
+        assertThat(builder.getIndex()).isSameAs(index);
+        assertThat(builder.build().getCategory().getIndex()).isSameAs(index);
+
+        builder.withIndex(ImmutableSet.of("b"));
+        assertThat(builder.getIndex()).isSameAs(index);
+
+        builder.withCategories("c");
+        assertThat(builder.getIndex()).containsExactly("a", "b", "c");
+        assertThat(builder.build().getCategory().getLabel()).containsOnlyKeys("a", "b", "c");
+        assertThat(index).containsExactly("a", "b");
+    }
+
+    @Test
+    public void testLargeDimension() throws Exception {
+
+        Dimension.Builder builder = Dimension.create("large");
+        for (int i = 0; i < 50000; i++) {
+            builder.withIndexedLabels(ImmutableMap.of("c" + i, "category " + i));
+            assertThat(builder.indexOf("c" + i)).isEqualTo(i);
+        }
+
+        assertThat(builder.build().getCategory().getIndex()).hasSize(50000);
+    }
 }
@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     ValueStoreTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class ValueStoreTest {
+
+    @Test
+    public void testDenseStore() throws Exception {
+
+        ValueStore store = ValueStore.builder(5)
+                .add(10).addMissing().add(30).add((Number) null).build();
+
+        assertThat(store.size()).isEqualTo(5);
+        assertThat(store.count()).isEqualTo(2);
+        assertThat(store.isIntegral()).isTrue();
+
+        assertThat(store.getDouble(0)).isEqualTo(10d);
+        assertThat(store.isMissing(1)).isTrue();
+        assertThat(store.getDouble(1)).isNaN();
+        assertThat(store.isMissing(4)).isTrue();
+
+        assertThat(store.nextIndex(0)).isEqualTo(0);
+        assertThat(store.nextIndex(1)).isEqualTo(2);
+        assertThat(store.nextIndex(3)).isEqualTo(-1);
+
+        assertThat(store.asMap()).containsExactly(
+                entry(0, 10),
+                entry(2, 30)
+        );
+    }
+
+    @Test
+    public void testSparseStore() throws Exception {
+
+        ValueStore.Builder builder = ValueStore.builder(100);
+        builder.set(42, 3).set(7, 1).set(99, 4).set(42, 2);
+        ValueStore store = builder.build();
+
+        assertThat(store.getStorage()).isEqualTo(ValueStore.Storage.SPARSE);
+        assertThat(store.size()).isEqualTo(100);
+        assertThat(store.count()).isEqualTo(3);
+        assertThat(store.isMissing(8)).isTrue();
+        assertThat(store.nextIndex(8)).isEqualTo(42);
+
+        assertThat(store.asMap()).containsExactly(
+                entry(7, 1),
+                entry(42, 2),
+                entry(99, 4)
+        );
+    }
+
+    @Test
+    public void testDensityThreshold() throws Exception {
+
+        ValueStore.Builder sparse = ValueStore.builder(4).withDensityThreshold(0.8);
+        ValueStore.Builder dense = ValueStore.builder(4).withDensityThreshold(0.5);
+        for (Number value : asList(1, null, 3, 4)) {
+            sparse.add(value);
+            dense.add(value);
+        }
+
+        assertThat(sparse.build().getStorage()).isEqualTo(ValueStore.Storage.SPARSE);
+        assertThat(dense.build().getStorage()).isEqualTo(ValueStore.Storage.DENSE);
+    }
+
+    @Test
+    public void testUnknownSize() throws Exception {
+
+        ValueStore store = ValueStore.builder().add(1).addMissing().add(3).build();
+        assertThat(store.size()).isEqualTo(3);
+
+        ValueStore padded = ValueStore.builder().add(1).build(10);
+        assertThat(padded.size()).isEqualTo(10);
+        assertThat(padded.getStorage()).isEqualTo(ValueStore.Storage.SPARSE);
+
+        assertThatThrownBy(() -> ValueStore.builder().add(1).add(2).build(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too many values");
+    }
+
+    @Test
+    public void testDecimalValues() throws Exception {
+
+        ValueStore store = ValueStore.builder(2).add(1).add(1.5).build();
+
+        assertThat(store.isIntegral()).isFalse();
+        assertThat(store.get(0)).isEqualTo(1d);
+        assertThat(store.get(1)).isEqualTo(1.5d);
+    }
+
+    @Test
+    public void testNaNIsMissing() throws Exception {
+
+        ValueStore added = ValueStore.builder(4).add(1).add(Double.NaN).add((Number) Float.NaN).add(2).build();
+        ValueStore set = ValueStore.builder(4).set(0, 1).set(1, Double.NaN).set(2, (Number) Double.NaN)
+                .set(3, 2).build();
+        ValueStore of = ValueStore.of(new double[]{1, Double.NaN, Double.NaN, 2}, true, 0.5);
+
+        for (ValueStore store : asList(added, set, of)) {
+            assertThat(store.count()).isEqualTo(2);
+            assertThat(store.isMissing(1)).isTrue();
+            assertThat(store.isMissing(2)).isTrue();
+            assertThat(store.get(1)).isNull();
+            assertThat(store.isIntegral()).isTrue();
+        }
+    }
+
+    @Test
+    public void testCopyTo() throws Exception {
+
+        ValueStore.Builder sparse = ValueStore.builder(6).withDensityThreshold(1.0);
+        ValueStore.Builder dense = ValueStore.builder(6).withDensityThreshold(0.1);
+        for (Number value : asList(1, null, 3, 4, null, 6)) {
+            sparse.add(value);
+            dense.add(value);
+        }
+
+        for (ValueStore store : asList(sparse.build(), dense.build())) {
+            double[] target = new double[5];
+            store.copyTo(1, target, 1, 4);
+            assertThat(target).containsExactly(0d, Double.NaN, 3d, 4d, Double.NaN);
+        }
+    }
+
+    @Test
+    public void testFailIfTooManyValues() throws Exception {
+        assertThatThrownBy(() -> ValueStore.builder(1).add(1).add(2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too many values");
+    }
+
+    @Test
+    public void testDatasetAccessors() throws Exception {
+
+        Dataset dataset = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A").withCategories("A1", "A2"),
+                        Dimension.create("B").withCategories("B1", "B2"))
+                .withValues(asList(1, null, 3, 4))
+                .build();
+
+        assertThat(dataset.getDouble(0)).isEqualTo(1d);
+        assertThat(dataset.isMissing(1)).isTrue();
+        assertThat(dataset.getValue()).containsOnlyKeys(0, 2, 3);
+        assertThat(dataset.getValue().get(3)).isEqualTo(4);
+        assertThat(dataset.getRows()).containsExactly(1, 3, 4);
+        assertThat(dataset.getStorage()).isEqualTo(ValueStore.Storage.DENSE);
+    }
+}
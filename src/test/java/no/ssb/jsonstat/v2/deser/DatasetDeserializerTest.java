@@ -27,16 +27,20 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import no.ssb.jsonstat.JsonStatModule;
 import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.ValueStore;
 import org.assertj.core.api.SoftAssertions;
 import org.junit.Test;
 
 import java.net.URL;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.google.common.collect.Lists.cartesianProduct;
 import static com.google.common.io.Resources.getResource;
 import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 public class DatasetDeserializerTest {
 
@@ -50,6 +54,10 @@ public class DatasetDeserializerTest {
         return Lists.newArrayList(Iterables.concat(lists));
     }
 
+    private static List<Number> toList(ValueStore store) {
+        return IntStream.range(0, store.size()).mapToObj(store::get).collect(Collectors.toList());
+    }
+
     public static Iterable<String> ecmaDates() {
         List<String> time = asList("T00:00", "T00:00:00");
         List<String> offset = asList("", "Z", "+00:00", "-00:00");
@@ -90,8 +98,8 @@ public class DatasetDeserializerTest {
         );
         arrayParser.nextValue();
 
-        List<Number> fromMap = ds.parseValues(mapParser, null);
-        List<Number> fromArray = ds.parseValues(arrayParser, null);
+        List<Number> fromMap = toList(ds.parseValues(mapParser, null, -1).build());
+        List<Number> fromArray = toList(ds.parseValues(arrayParser, null, 5).build());
         List<Number> expected = Lists.newArrayList(
                 10, 20, null, 30, 40
         );
@@ -103,6 +111,40 @@ public class DatasetDeserializerTest {
 
     }
 
+    @Test
+    public void testParseDecimalValues() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonParser arrayParser = mapper.getFactory().createParser(
+                "[ 1.5, null, 3, 10000000000, \"2.5\" ]"
+        );
+        arrayParser.nextValue();
+
+        ValueStore values = ds.parseValues(arrayParser, null, -1).build();
+
+        assertThat(values.isIntegral()).isFalse();
+        assertThat(toList(values)).containsExactly(
+                1.5d, null, 3d, 1e10d, 2.5d
+        );
+    }
+
+    @Test
+    public void testParseValuesWithSize() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+
+        JsonParser arrayParser = mapper.getFactory().createParser(
+                "[ 10, 20, 30 ]"
+        );
+        arrayParser.nextValue();
+
+        assertThatThrownBy(() -> ds.parseValues(arrayParser, null, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too many values");
+
+        assertThat(DatasetDeserializer.cellCount(asList(2, 3, 4))).isEqualTo(24);
+        assertThat(DatasetDeserializer.cellCount(asList())).isEqualTo(-1);
+    }
+
     @Test
     public void testDimensionOrder() throws Exception {
         ObjectMapper mapper = new ObjectMapper();
@@ -0,0 +1,163 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     JsonStatLoaderTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.io.Resources;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.ValueStore;
+import no.ssb.jsonstat.v2.support.CubeGenerator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.CharConversionException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonStatLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new GuavaModule());
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new JsonStatModule());
+        // The samples use properties that are not supported yet (note, child...).
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    @Test
+    public void testLoadSameValues() throws Exception {
+
+        JsonStatLoader loader = new JsonStatLoader(mapper).withIndexInterval(3);
+
+        for (String name : new String[]{"canada.json", "galicia.json", "oecd.json",
+                "us-gsp.json", "us-labor.json", "us-unr.json"}) {
+
+            URL resource = Resources.getResource(Dataset.class, name);
+            Dataset expected = mapper.readValue(resource, DatasetBuildable.class).build();
+            Dataset loaded = loader.load(Paths.get(resource.toURI()));
+
+            ValueStore values = loaded.getValueStore();
+            assertThat(values.getStorage()).as(name).isEqualTo(ValueStore.Storage.MAPPED);
+            assertThat(loaded.getLabel()).as(name).isEqualTo(expected.getLabel());
+            assertThat(loaded.getDimension().keySet()).as(name).isEqualTo(expected.getDimension().keySet());
+            assertThat(values.count()).as(name).isEqualTo(expected.getValueStore().count());
+            assertThat(loaded.getValue()).as(name).isEqualTo(expected.getValue());
+
+            double[] row = new double[values.size()];
+            values.copyTo(0, row, 0, row.length);
+            for (int i = 0; i < row.length; i++) {
+                assertThat(row[i]).as(name).isEqualTo(expected.getDouble(i));
+            }
+        }
+    }
+
+    @Test
+    public void testLoadValuesInObjectForm() throws Exception {
+
+        Path path = Paths.get(Resources.getResource(Dataset.class, "json-stat-1-dimension.json").toURI());
+        Dataset loaded = new JsonStatLoader(mapper).load(path);
+
+        assertThat(loaded.getStorage()).isNotEqualTo(ValueStore.Storage.MAPPED);
+        assertThat(loaded.getValue()).containsValues(1, 2, 3);
+    }
+
+    @Test
+    public void testLoadWithByteOrderMark() throws Exception {
+
+        URL resource = Resources.getResource(Dataset.class, "galicia.json");
+        Dataset expected = mapper.readValue(resource, DatasetBuildable.class).build();
+
+        Path path = folder.newFile("bom.json").toPath();
+        Files.write(path, new byte[]{(byte) 0xEF, (byte) 0xBB, (byte) 0xBF});
+        Files.write(path, Resources.toByteArray(resource), StandardOpenOption.APPEND);
+
+        Dataset loaded = new JsonStatLoader(mapper).withIndexInterval(3).load(path);
+        assertThat(loaded.getValueStore().getStorage()).isEqualTo(ValueStore.Storage.MAPPED);
+        for (int i = 0; i < expected.getValueStore().size(); i++) {
+            assertThat(loaded.getDouble(i)).isEqualTo(expected.getDouble(i));
+        }
+    }
+
+    @Test
+    public void testFailIfNotUtf8() throws Exception {
+
+        String json = Resources.toString(Resources.getResource(Dataset.class, "galicia.json"), StandardCharsets.UTF_8);
+
+        Path path = folder.newFile("utf16.json").toPath();
+        Files.write(path, json.getBytes(StandardCharsets.UTF_16LE));
+
+        assertThatThrownBy(() -> new JsonStatLoader(mapper).load(path))
+                .isInstanceOf(CharConversionException.class);
+    }
+
+    @Test
+    public void testSequentialAccess() throws Exception {
+
+        Path path = folder.newFile("cube.json").toPath();
+        CubeGenerator.create("cube")
+                .withDimension("a", 10)
+                .withDimension("b", 23)
+                .withMissingRatio(0.3)
+                .write(path);
+        Dataset expected = mapper.readValue(path.toFile(), DatasetBuildable.class).build();
+        ValueStore values = new JsonStatLoader(mapper).withIndexInterval(7).load(path).getValueStore();
+        assertThat(values.getStorage()).isEqualTo(ValueStore.Storage.MAPPED);
+        int size = values.size();
+
+        // Forward, crossing the checkpoints, then backward and by steps.
+        for (int i = 0; i < size; i++) {
+            assertThat(values.isMissing(i)).as("index %s", i).isEqualTo(expected.isMissing(i));
+            assertThat(values.getDouble(i)).as("index %s", i).isEqualTo(expected.getDouble(i));
+        }
+        for (int i = size - 1; i >= 0; i--) {
+            assertThat(values.getDouble(i)).as("index %s", i).isEqualTo(expected.getDouble(i));
+        }
+        for (int i = 0; i < size; i += 5) {
+            assertThat(values.getDouble(i)).as("index %s", i).isEqualTo(expected.getDouble(i));
+        }
+
+        ValueStore store = expected.getValueStore();
+        for (int i = 0; i <= size; i++) {
+            assertThat(values.nextIndex(i)).as("index %s", i).isEqualTo(store.nextIndex(i));
+        }
+        assertThat(values.asMap()).isEqualTo(store.asMap());
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     JsonStatReaderTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.deser;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.collect.Lists;
+import com.google.common.io.Resources;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.Dimension;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class JsonStatReaderTest {
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new GuavaModule());
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new JsonStatModule());
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    /**
+     * Read all the cells and check them against the dataset, return the indices.
+     */
+    private List<Integer> readAll(Dataset expected, InputStream input) throws Exception {
+        List<Integer> indices = Lists.newArrayList();
+        try (JsonStatReader reader = JsonStatReader.open(mapper, input)) {
+            assertThat(reader.getDimension().keySet()).isEqualTo(expected.getDimension().keySet());
+            while (reader.next()) {
+                int index = reader.getIndex();
+                assertThat(reader.getCoordinateResolver().indexOf(reader.getOrdinals())).isEqualTo(index);
+                assertThat(reader.getValue()).isEqualTo(expected.getDouble(index));
+                assertThat(reader.isMissing()).isEqualTo(expected.isMissing(index));
+                indices.add(index);
+            }
+            assertThat(reader.next()).isFalse();
+        }
+        return indices;
+    }
+
+    @Test
+    public void testStreaming() throws Exception {
+
+        // The serializer writes the dimensions first.
+        Dataset dataset = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A").withCategories("A1", "A2"),
+                        Dimension.create("B").withCategories("B1", "B2", "B3"))
+                .withValues(asList(1, 2, null, 4, 5.5, 6))
+                .build();
+        byte[] json = mapper.writeValueAsBytes(dataset);
+
+        assertThat(readAll(dataset, new ByteArrayInputStream(json))).containsExactly(0, 1, 2, 3, 4, 5);
+    }
+
+    @Test
+    public void testStreamingSparse() throws Exception {
+
+        Dataset dataset = Dataset.create("test")
+                .withDimensions(
+                        Dimension.create("A").withCategories("A1", "A2", "A3"),
+                        Dimension.create("B").withCategories("B1", "B2", "B3"))
+                .withValues(asList(null, null, null, null, null, 6, null, 8, null))
+                .build();
+        byte[] json = mapper.writeValueAsBytes(dataset);
+
+        assertThat(readAll(dataset, new ByteArrayInputStream(json))).containsExactly(5, 7);
+    }
+
+    @Test
+    public void testBuffered() throws Exception {
+
+        // The samples put the values before the dimensions.
+        for (String name : asList("galicia.json", "us-unr.json", "oecd.json")) {
+            URL resource = Resources.getResource(Dataset.class, name);
+            Dataset expected = mapper.readValue(resource, DatasetBuildable.class).build();
+
+            assertThat(readAll(expected, resource.openStream())).hasSize(expected.getValueStore().size());
+        }
+
+        URL sparse = Resources.getResource(Dataset.class, "json-stat-1-dimension.json");
+        Dataset expected = mapper.readValue(sparse, DatasetBuildable.class).build();
+        assertThat(readAll(expected, sparse.openStream())).hasSize(expected.getValueStore().count());
+    }
+
+    @Test
+    public void testFailIfMissingValues() throws Exception {
+
+        String json = "{\"version\":\"2.0\",\"id\":[\"A\"],\"size\":[2]," +
+                "\"dimension\":{\"A\":{\"category\":{\"index\":[\"A1\",\"A2\"]}}},\"value\":[1]}";
+
+        try (JsonStatReader reader = JsonStatReader.open(mapper, new ByteArrayInputStream(json.getBytes()))) {
+            assertThat(reader.next()).isTrue();
+            assertThatThrownBy(reader::next).hasMessageContaining("expected 2 values but found 1");
+        }
+    }
+
+    @Test
+    public void testFailIfMissingBufferedValues() throws Exception {
+
+        String json = "{\"version\":\"2.0\",\"value\":[1],\"id\":[\"A\"],\"size\":[2]," +
+                "\"dimension\":{\"A\":{\"category\":{\"index\":[\"A1\",\"A2\"]}}}}";
+
+        assertThatThrownBy(() -> JsonStatReader.open(mapper, new ByteArrayInputStream(json.getBytes())))
+                .hasMessageContaining("expected 2 values but found 1");
+
+        String tooMany = json.replace("[1]", "[1,2,3]");
+        assertThatThrownBy(() -> JsonStatReader.open(mapper, new ByteArrayInputStream(tooMany.getBytes())))
+                .hasMessageContaining("expected 2 values but found 3");
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetSerializerTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.ser;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.collect.ImmutableMap;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.Dimension;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DatasetSerializerTest {
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new GuavaModule());
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new JsonStatModule());
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+
+        Dataset dataset = Dataset.create("test")
+                .withSource("source")
+                .updatedAt(Instant.parse("2016-01-01T10:00:00.123456Z"))
+                .withExtension(ImmutableMap.of("key", "value"))
+                .withDimensions(
+                        Dimension.create("year").withTimeRole().withLabel("Year")
+                                .withCategories("2015", "2016"),
+                        Dimension.create("area").withGeoRole()
+                                .withIndexedLabels(ImmutableMap.of("N", "North", "S", "South")))
+                .withValues(asList(1.5, null, 3, 4))
+                .build();
+
+        JsonNode node = mapper.readTree(mapper.writeValueAsString(dataset));
+
+        assertThat(node.get("version").asText()).isEqualTo("2.0");
+        assertThat(node.get("class").asText()).isEqualTo("dataset");
+        assertThat(node.get("updated").asText()).isEqualTo("2016-01-01T10:00:00.123Z");
+        assertThat(node.get("id").toString()).isEqualTo("[\"year\",\"area\"]");
+        assertThat(node.get("size").toString()).isEqualTo("[2,2]");
+        assertThat(node.get("role").toString()).isEqualTo("{\"time\":[\"year\"],\"geo\":[\"area\"]}");
+        assertThat(node.at("/dimension/area/category/label/S").asText()).isEqualTo("South");
+        assertThat(node.get("value").toString()).isEqualTo("[1.5,null,3.0,4.0]");
+        assertThat(node.get("extension").toString()).isEqualTo("{\"key\":\"value\"}");
+    }
+
+    @Test
+    public void testSparseValues() throws Exception {
+
+        Dataset dataset = Dataset.create("sparse")
+                .withDimensions(Dimension.create("A").withCategories("A1", "A2", "A3", "A4", "A5", "A6"))
+                .withValues(asList(null, null, 3, null, null, null))
+                .build();
+
+        JsonNode node = mapper.readTree(mapper.writeValueAsString(dataset));
+
+        assertThat(node.get("value").toString()).isEqualTo("{\"2\":3}");
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+
+        Dataset dataset = Dataset.create("round trip")
+                .updatedAt(Instant.parse("2016-01-01T00:00:00Z"))
+                .withDimensions(
+                        Dimension.create("A").withMetricRole().withCategories("A1", "A2"),
+                        Dimension.create("B").withCategories("B1", "B2", "B3"))
+                .withValues(asList(1, 2, null, 4, 5, 6))
+                .build();
+
+        Dataset read = mapper.readValue(mapper.writeValueAsBytes(dataset), DatasetBuildable.class).build();
+
+        assertThat(read.getLabel()).isEqualTo(dataset.getLabel());
+        assertThat(read.getUpdated()).isEqualTo(dataset.getUpdated());
+        assertThat(read.getId()).isEqualTo(dataset.getId());
+        assertThat(read.getRole()).isEqualTo(dataset.getRole());
+        assertThat(read.getValue()).isEqualTo(dataset.getValue());
+        assertThat(read.asMap()).isEqualTo(dataset.asMap());
+        assertThat(read.getDimension().get("B").getCategory().getIndex())
+                .containsExactlyElementsOf(dataset.getDimension().get("B").getCategory().getIndex());
+    }
+}
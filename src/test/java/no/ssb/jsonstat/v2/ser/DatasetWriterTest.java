@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     DatasetWriterTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.ser;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.google.common.collect.ImmutableMap;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.DatasetValueBuilder;
+import no.ssb.jsonstat.v2.Dimension;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class DatasetWriterTest {
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new GuavaModule());
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new JsonStatModule());
+    }
+
+    private DatasetValueBuilder dataset() {
+        return Dataset.create("test")
+                .withExtension(ImmutableMap.of("key", "value"))
+                .withDimensions(
+                        Dimension.create("A").withCategories("A1", "A2"),
+                        Dimension.create("B").withCategories("B1", "B2", "B3"));
+    }
+
+    @Test
+    public void testWrite() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DatasetWriter writer = new DatasetWriter(mapper, out, dataset(), 4)) {
+            writer.append(1).appendMissing().append(3.5);
+            int header = out.size();
+
+            writer.appendBlock(new double[]{0, 4, Double.NaN, 6, 0}, 1, 3);
+            assertThat(out.size()).as("flushed after a chunk").isGreaterThan(header);
+            assertThat(writer.position()).isEqualTo(6);
+        }
+
+        Dataset read = mapper.readValue(out.toByteArray(), DatasetBuildable.class).build();
+
+        assertThat(read.getLabel()).contains("test");
+        assertThat(read.getId()).containsExactly("A", "B");
+        assertThat(read.getValue()).containsOnlyKeys(0, 2, 3, 5);
+        assertThat(read.getDouble(2)).isEqualTo(3.5);
+        assertThat(read.getDouble(5)).isEqualTo(6);
+        assertThat(mapper.readTree(out.toByteArray()).get("extension").get("key").asText()).isEqualTo("value");
+    }
+
+    @Test
+    public void testDoesNotCloseStream() throws Exception {
+
+        boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FilterOutputStream stream = new FilterOutputStream(out) {
+            @Override
+            public void close() throws IOException {
+                closed[0] = true;
+                super.close();
+            }
+        };
+
+        try (DatasetWriter writer = new DatasetWriter(mapper, stream, dataset())) {
+            writer.appendBlock(new double[6], 0, 6);
+        }
+
+        assertThat(closed[0]).isFalse();
+        assertThat(out.toString("UTF-8")).endsWith("}");
+    }
+
+    @Test
+    public void testFailIfTooManyValues() throws Exception {
+
+        DatasetWriter writer = new DatasetWriter(mapper, new ByteArrayOutputStream(), dataset());
+        writer.appendBlock(new double[6], 0, 6);
+
+        assertThatThrownBy(() -> writer.append(1))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too many values");
+        assertThatThrownBy(() -> writer.appendBlock(new double[2], 0, 2))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("too many values");
+    }
+
+    @Test
+    public void testFailIfTooFewValues() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DatasetWriter writer = new DatasetWriter(mapper, out, dataset());
+        writer.append(1);
+
+        assertThatThrownBy(writer::close)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("expected 6 values but 1 were written");
+        assertThat(out.toString("UTF-8")).doesNotEndWith("}");
+    }
+}
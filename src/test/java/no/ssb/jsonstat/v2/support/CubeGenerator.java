@@ -0,0 +1,380 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     CubeGenerator.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.support;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import no.ssb.jsonstat.v2.Dimension;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Writes synthetic JSON-stat documents of arbitrary size, for tests and benchmarks.
+ * <p>
+ * This is not part of the library, the benchmarks get it from the test jar.
+ * <p>
+ * The documents are streamed, nothing proportional to the number of cells is kept in memory. The output only
+ * depends on the configuration and the seed, so the same generator always writes the same bytes:
+ * <pre>
+ *   CubeGenerator.create("population")
+ *           .withDimension("region", 1000, Dimension.Roles.GEO)
+ *           .withDimension("year", 100, Dimension.Roles.TIME)
+ *           .withDimension("age", 100)
+ *           .withMissingRatio(0.2)
+ *           .write(path);
+ * </pre>
+ * The categories of a dimension "region" are "region0", "region1"... labeled "Region 0", "Region 1"...
+ * Values are integers between 0 and 99999.
+ */
+public final class CubeGenerator {
+
+    private static final JsonFactory FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final int MAX_VALUE = 100000;
+
+    private final String id;
+    private final List<String> dimensions = new ArrayList<>();
+    private final List<Integer> sizes = new ArrayList<>();
+    private final Multimap<Dimension.Roles, String> roles = LinkedHashMultimap.create();
+
+    private double missingRatio = 0;
+    private double statusRatio = 0;
+    private String status = "e";
+    private ValueForm valueForm = ValueForm.ARRAY;
+    private long seed = 0;
+
+    private CubeGenerator(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Create a generator for a dataset with the given id.
+     */
+    public static CubeGenerator create(String id) {
+        checkNotNull(id, "id cannot be null");
+        return new CubeGenerator(id);
+    }
+
+    /**
+     * Add a dimension with the given number of categories.
+     *
+     * @throws IllegalArgumentException if the dimension already exists or the size is not positive
+     */
+    public CubeGenerator withDimension(String id, int size) {
+        checkNotNull(id, "id cannot be null");
+        checkArgument(!dimensions.contains(id), "duplicate dimension %s", id);
+        checkArgument(size > 0, "size must be positive");
+        dimensions.add(id);
+        sizes.add(size);
+        return this;
+    }
+
+    /**
+     * Add a dimension with a role. See {@link #withDimension(String, int)}.
+     */
+    public CubeGenerator withDimension(String id, int size, Dimension.Roles role) {
+        checkNotNull(role, "role cannot be null");
+        withDimension(id, size);
+        roles.put(role, id);
+        return this;
+    }
+
+    /**
+     * Set the ratio of missing (null) values. Defaults to 0.
+     *
+     * @throws IllegalArgumentException if ratio is not between 0 and 1
+     */
+    public CubeGenerator withMissingRatio(double ratio) {
+        checkArgument(ratio >= 0 && ratio <= 1, "ratio must be between 0 and 1");
+        this.missingRatio = ratio;
+        return this;
+    }
+
+    /**
+     * Set the status of a ratio of the non missing values. Defaults to no status.
+     *
+     * @throws IllegalArgumentException if ratio is not between 0 and 1
+     */
+    public CubeGenerator withStatus(String status, double ratio) {
+        checkNotNull(status, "status cannot be null");
+        checkArgument(ratio >= 0 && ratio <= 1, "ratio must be between 0 and 1");
+        this.status = status;
+        this.statusRatio = ratio;
+        return this;
+    }
+
+    /**
+     * Set the form of the value property. Defaults to {@link ValueForm#ARRAY}. Ignored in v1 bundles.
+     */
+    public CubeGenerator withValueForm(ValueForm form) {
+        this.valueForm = checkNotNull(form, "form cannot be null");
+        return this;
+    }
+
+    /**
+     * Set the seed of the random values. Defaults to 0.
+     */
+    public CubeGenerator withSeed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * Return the number of cells of the dataset, that is the product of the sizes of the dimensions.
+     *
+     * @throws ArithmeticException if the number of cells does not fit in an int
+     */
+    public int size() {
+        int size = 1;
+        for (Integer dimension : sizes) {
+            size = Math.multiplyExact(size, dimension);
+        }
+        return size;
+    }
+
+    /**
+     * Write a JSON-stat 2.0 dataset to a file.
+     */
+    public void write(Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(out);
+        }
+    }
+
+    /**
+     * Write a JSON-stat 2.0 dataset. The stream is flushed but not closed.
+     * <p>
+     * The dimensions are written before the values.
+     */
+    public void write(OutputStream out) throws IOException {
+        checkState(!dimensions.isEmpty(), "no dimensions");
+        int size = size();
+
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("version", "2.0");
+            gen.writeStringField("class", "dataset");
+            gen.writeStringField("label", id);
+
+            gen.writeArrayFieldStart("id");
+            for (String dimension : dimensions) {
+                gen.writeString(dimension);
+            }
+            gen.writeEndArray();
+            writeSizes(gen);
+            writeRoles(gen);
+
+            gen.writeObjectFieldStart("dimension");
+            writeDimensions(gen);
+            gen.writeEndObject();
+
+            gen.writeFieldName("value");
+            if (valueForm == ValueForm.OBJECT)
+                writeValueObject(gen, size, seed);
+            else
+                writeValueArray(gen, size, seed);
+            writeStatus(gen, size, seed);
+
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * Write a JSON-stat 1.0 bundle with the given number of datasets to a file.
+     */
+    public void writeBundle(Path path, int datasets) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            writeBundle(out, datasets);
+        }
+    }
+
+    /**
+     * Write a JSON-stat 1.0 bundle with the given number of datasets. The stream is flushed but not closed.
+     * <p>
+     * The datasets are named after the id of the generator followed by their position, their values use
+     * consecutive seeds. The size and roles are written inside the dimension property, and the values are
+     * always in an array.
+     */
+    public void writeBundle(OutputStream out, int datasets) throws IOException {
+        checkState(!dimensions.isEmpty(), "no dimensions");
+        checkArgument(datasets > 0, "datasets must be positive");
+        int size = size();
+
+        try (JsonGenerator gen = FACTORY.createGenerator(out)) {
+            gen.writeStartObject();
+            for (int i = 0; i < datasets; i++) {
+                gen.writeObjectFieldStart(id + i);
+                gen.writeStringField("label", id + " " + i);
+
+                gen.writeObjectFieldStart("dimension");
+                gen.writeArrayFieldStart("id");
+                for (String dimension : dimensions) {
+                    gen.writeString(dimension);
+                }
+                gen.writeEndArray();
+                writeSizes(gen);
+                writeRoles(gen);
+                writeDimensions(gen);
+                gen.writeEndObject();
+
+                gen.writeFieldName("value");
+                writeValueArray(gen, size, seed + i);
+                writeStatus(gen, size, seed + i);
+                gen.writeEndObject();
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    private void writeSizes(JsonGenerator gen) throws IOException {
+        gen.writeArrayFieldStart("size");
+        for (Integer size : sizes) {
+            gen.writeNumber(size);
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeRoles(JsonGenerator gen) throws IOException {
+        if (roles.isEmpty())
+            return;
+        gen.writeObjectFieldStart("role");
+        for (Map.Entry<Dimension.Roles, Collection<String>> role : roles.asMap().entrySet()) {
+            gen.writeArrayFieldStart(role.getKey().toString());
+            for (String dimension : role.getValue()) {
+                gen.writeString(dimension);
+            }
+            gen.writeEndArray();
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeDimensions(JsonGenerator gen) throws IOException {
+        for (int d = 0; d < dimensions.size(); d++) {
+            String dimension = dimensions.get(d);
+            String label = Character.toUpperCase(dimension.charAt(0)) + dimension.substring(1);
+
+            gen.writeObjectFieldStart(dimension);
+            gen.writeStringField("label", label);
+            gen.writeObjectFieldStart("category");
+            gen.writeArrayFieldStart("index");
+            for (int c = 0; c < sizes.get(d); c++) {
+                gen.writeString(dimension + c);
+            }
+            gen.writeEndArray();
+            gen.writeObjectFieldStart("label");
+            for (int c = 0; c < sizes.get(d); c++) {
+                gen.writeStringField(dimension + c, label + " " + c);
+            }
+            gen.writeEndObject();
+            gen.writeEndObject();
+            gen.writeEndObject();
+        }
+    }
+
+    private void writeValueArray(JsonGenerator gen, int size, long seed) throws IOException {
+        Cells cells = new Cells(seed);
+        gen.writeStartArray();
+        for (int index = 0; index < size; index++) {
+            if (cells.next())
+                gen.writeNumber(cells.value);
+            else
+                gen.writeNull();
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeValueObject(JsonGenerator gen, int size, long seed) throws IOException {
+        Cells cells = new Cells(seed);
+        gen.writeStartObject();
+        for (int index = 0; index < size; index++) {
+            if (cells.next()) {
+                gen.writeFieldName(Integer.toString(index));
+                gen.writeNumber(cells.value);
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeStatus(JsonGenerator gen, int size, long seed) throws IOException {
+        if (statusRatio == 0)
+            return;
+        Cells cells = new Cells(seed);
+        gen.writeObjectFieldStart("status");
+        for (int index = 0; index < size; index++) {
+            if (cells.next() && cells.status)
+                gen.writeStringField(Integer.toString(index), status);
+        }
+        gen.writeEndObject();
+    }
+
+    /**
+     * The forms of the value property.
+     */
+    public enum ValueForm {
+        /**
+         * An array with one element per cell, missing values are null.
+         */
+        ARRAY,
+        /**
+         * An object keyed by index, missing values are omitted.
+         */
+        OBJECT
+    }
+
+    /**
+     * Draws the cells in row-major order. Every pass with the same seed draws the same cells, so the values
+     * and the status can be written separately.
+     */
+    private class Cells {
+
+        private final Random random;
+        private int value;
+        private boolean status;
+
+        private Cells(long seed) {
+            this.random = new Random(seed);
+        }
+
+        /**
+         * Draw the next cell and return false if it is missing.
+         */
+        private boolean next() {
+            // Always draw the same number of times so that cells do not depend on the ratios of the previous ones.
+            boolean missing = random.nextDouble() < missingRatio;
+            value = random.nextInt(MAX_VALUE);
+            status = random.nextDouble() < statusRatio;
+            return !missing;
+        }
+    }
+}
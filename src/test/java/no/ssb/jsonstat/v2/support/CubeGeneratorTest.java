@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2016 Hadrien Kohl (hadrien.kohl@gmail.com) and contributors
+ *
+ *     CubeGeneratorTest.java
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package no.ssb.jsonstat.v2.support;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import no.ssb.jsonstat.JsonStatModule;
+import no.ssb.jsonstat.v1.Stat;
+import no.ssb.jsonstat.v1.parser.JacksonStatParser;
+import no.ssb.jsonstat.v2.Dataset;
+import no.ssb.jsonstat.v2.DatasetBuildable;
+import no.ssb.jsonstat.v2.Dimension;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CubeGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ObjectMapper mapper;
+
+    @Before
+    public void setUp() throws Exception {
+        mapper = new ObjectMapper();
+        mapper.registerModule(new GuavaModule());
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new JsonStatModule());
+        mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    private CubeGenerator generator() {
+        return CubeGenerator.create("test")
+                .withDimension("region", 20, Dimension.Roles.GEO)
+                .withDimension("year", 10, Dimension.Roles.TIME)
+                .withDimension("age", 5)
+                .withMissingRatio(0.3)
+                .withStatus("p", 0.1)
+                .withSeed(42);
+    }
+
+    @Test
+    public void testDataset() throws Exception {
+
+        CubeGenerator generator = generator();
+        assertThat(generator.size()).isEqualTo(1000);
+
+        Path path = folder.getRoot().toPath().resolve("cube.json");
+        generator.write(path);
+        Dataset dataset = mapper.readValue(path.toFile(), DatasetBuildable.class).build();
+
+        assertThat(dataset.getId()).containsExactly("region", "year", "age");
+        assertThat(dataset.getSize()).containsExactly(20, 10, 5);
+        assertThat(dataset.getRole().get(Dimension.Roles.TIME)).containsExactly("year");
+        assertThat(dataset.getDimension().get("age").getCategory().getLabel()).containsEntry("age3", "Age 3");
+        assertThat(dataset.getValueStore().count()).isBetween(600, 800);
+    }
+
+    @Test
+    public void testDeterministic() throws Exception {
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        generator().write(first);
+        generator().write(second);
+        assertThat(first.toByteArray()).isEqualTo(second.toByteArray());
+
+        ByteArrayOutputStream object = new ByteArrayOutputStream();
+        generator().withValueForm(CubeGenerator.ValueForm.OBJECT).write(object);
+
+        Dataset fromArray = mapper.readValue(first.toByteArray(), DatasetBuildable.class).build();
+        Dataset fromObject = mapper.readValue(object.toByteArray(), DatasetBuildable.class).build();
+        assertThat(fromObject.getValue()).isEqualTo(fromArray.getValue());
+    }
+
+    @Test
+    public void testBundle() throws Exception {
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        generator().withMissingRatio(0).writeBundle(out, 3);
+
+        Stat stat = new JacksonStatParser().parse(new ByteArrayInputStream(out.toByteArray()));
+        assertThat(stat.getDatasets()).hasSize(3);
+        assertThat(stat.getDataset("test2").get().size()).isEqualTo(1000);
+    }
+
+    @Test
+    public void testInvalidConfiguration() throws Exception {
+
+        assertThatThrownBy(() -> CubeGenerator.create("test").withDimension("a", 2).withDimension("a", 3))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CubeGenerator.create("test").write(new ByteArrayOutputStream()))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> CubeGenerator.create("test")
+                .withDimension("a", 100000).withDimension("b", 100000).size())
+                .isInstanceOf(ArithmeticException.class);
+    }
+}
@@ -22,6 +22,7 @@ import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.collect.Table;
 import com.google.common.collect.Tables;
 import no.ssb.jsonstat.v2.Dataset;
@@ -33,6 +34,7 @@ import java.time.Duration;
 import java.time.temporal.TemporalUnit;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -421,6 +423,83 @@ public class DatasetTableViewTest {
         );
     }
 
+    @Test
+    public void testGetByOrdinal() throws Exception {
+
+        DatasetTableView table = new DatasetTableView(
+                dataset, ImmutableSet.of("C", "A"), ImmutableSet.of("B"));
+
+        List<List<String>> rows = Lists.newArrayList(table.rowKeySet());
+        List<List<String>> columns = Lists.newArrayList(table.columnKeySet());
+        for (int row = 0; row < rows.size(); row++) {
+            for (int column = 0; column < columns.size(); column++) {
+                assertThat(table.get(row, column))
+                        .isEqualTo(table.get(rows.get(row), columns.get(column)));
+            }
+        }
+
+        assertThat(table.get(asList("C2", "A3"), asList("B2"))).isEqualTo(hashCodes.get("A3B2C2"));
+        assertThat(table.get(asList("C2", "A3"), asList("B3"))).isNull();
+        assertThat(table.get(asList("C2"), asList("B2"))).isNull();
+    }
+
+    @Test
+    public void testCellSetStreams() throws Exception {
+
+        DatasetTableView table = new DatasetTableView(
+                dataset, ImmutableSet.of("A", "C"), ImmutableSet.of("B"));
+
+        Set<Table.Cell<List<String>, List<String>, Number>> cells = table.cellSet();
+        assertThat(cells).hasSize(24);
+        assertThat(cells.iterator().next())
+                .isEqualTo(cell(asList("A1", "C1"), asList("B1"), hashCodes.get("A1B1C1")));
+
+        List<Table.Cell<List<String>, List<String>, Number>> sequential = cells.stream()
+                .collect(Collectors.toList());
+        List<Table.Cell<List<String>, List<String>, Number>> parallel = cells.parallelStream()
+                .collect(Collectors.toList());
+        assertThat(parallel).containsExactlyElementsOf(sequential);
+        assertThat(sequential).doesNotHaveDuplicates().hasSize(24);
+
+        assertThat(cells.contains(cell(asList("A3", "C4"), asList("B2"), hashCodes.get("A3B2C4")))).isTrue();
+        assertThat(cells.contains(cell(asList("A3", "C4"), asList("B2"), 0))).isFalse();
+    }
+
+    @Test
+    public void testForEachRow() throws Exception {
+
+        for (ImmutableSet<String> columns : asList(ImmutableSet.of("C"), ImmutableSet.of("B"))) {
+            ImmutableSet<String> rows = ImmutableSet.copyOf(Sets.difference(ImmutableSet.of("A", "B", "C"), columns));
+            DatasetTableView table = new DatasetTableView(dataset, rows, columns);
+            List<List<String>> columnKeys = Lists.newArrayList(table.columnKeySet());
+
+            List<List<String>> visited = Lists.newArrayList();
+            table.forEachRow((ordinal, rowKey, values) -> {
+                assertThat(values).hasSize(columnKeys.size());
+                for (int column = 0; column < values.length; column++) {
+                    assertThat(values[column])
+                            .isEqualTo(table.get(rowKey, columnKeys.get(column)).doubleValue());
+                }
+                visited.add(rowKey);
+            });
+            assertThat(visited).containsExactlyElementsOf(table.rowKeySet());
+        }
+    }
+
+    @Test
+    public void testRowAndColumnLookups() throws Exception {
+
+        DatasetTableView table = new DatasetTableView(
+                dataset, ImmutableSet.of("A", "B"), ImmutableSet.of("C"));
+
+        assertThat(table.containsRow(asList("A2", "B1"))).isTrue();
+        assertThat(table.containsRow(asList("A4", "B1"))).isFalse();
+        assertThat(table.containsColumn(asList("C4"))).isTrue();
+        assertThat(table.row(asList("A4", "B1"))).isEmpty();
+        assertThat(table.row(asList("A2", "B1")).get(asList("C3"))).isEqualTo(hashCodes.get("A2B1C3"));
+        assertThat(table.column(asList("C3")).get(asList("A2", "B1"))).isEqualTo(hashCodes.get("A2B1C3"));
+    }
+
     private Table.Cell<List<String>, List<String>, Number> cell(List<String> row, List<String> column, Number value) {
         return Tables.immutableCell(row, column, value);
     }